@@ -1,8 +1,11 @@
 package com.kineticdata.bridgehub.adapter.solr;
 
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JsonProvider;
 import com.kineticdata.bridgehub.adapter.BridgeAdapter;
 import com.kineticdata.bridgehub.adapter.BridgeError;
 import com.kineticdata.bridgehub.adapter.BridgeRequest;
@@ -12,18 +15,41 @@ import com.kineticdata.bridgehub.adapter.Record;
 import com.kineticdata.bridgehub.adapter.RecordList;
 import com.kineticdata.commons.v1.config.ConfigurableProperty;
 import com.kineticdata.commons.v1.config.ConfigurablePropertyMap;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.Consts;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
@@ -32,7 +58,8 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.impl.client.HttpClients;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
 import org.slf4j.LoggerFactory;
 
 public class SolrAdapter implements BridgeAdapter {
@@ -61,21 +88,200 @@ public class SolrAdapter implements BridgeAdapter {
         }
     }
 
+    /** Defines the size of the pooled HTTP connection manager */
+    private static final int MAX_CONNECTIONS_TOTAL = 50;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+    /** Pooled connections idle for longer than this many milliseconds are checked before reuse */
+    private static final int CONNECTION_VALIDATE_AFTER_INACTIVITY = 2000;
+    private static final JsonProvider JSON_PROVIDER = Configuration.defaultConfiguration().jsonProvider();
+    /** Defines the default number of seconds a structure schema is cached */
+    private static final int SCHEMA_CACHE_TTL_DEFAULT = 300;
+    /** Defines the default upper bound of the adaptive concurrency limit of each structure */
+    private static final int CONCURRENCY_LIMIT_DEFAULT = MAX_CONNECTIONS_PER_ROUTE;
+    private static final double LIMITER_LATENCY_TOLERANCE = 2.0;
+    private static final double LIMITER_BACKOFF_RATIO = 0.9;
+    /** Defines the default latency budget of a request in milliseconds */
+    private static final int REQUEST_TIMEOUT_DEFAULT = 30000;
+    private static final int RETRY_ATTEMPTS_DEFAULT = 1;
+    private static final long MIN_RETRY_BUDGET_MILLIS = 100;
+    /** Defines the share of the latency budget passed to Solr as timeAllowed */
+    private static final double TIME_ALLOWED_RATIO = 0.9;
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final int LATENCY_SAMPLES = 256;
+    /** Defines the circuit breaker defaults */
+    private static final int BREAKER_WINDOW_SIZE = 20;
+    private static final int BREAKER_MINIMUM_CALLS = 10;
+    private static final int BREAKER_HALF_OPEN_CALLS = 3;
+    private static final int BREAKER_FAILURE_RATE_DEFAULT = 50;
+    private static final int BREAKER_SLOW_CALL_RATE_DEFAULT = 80;
+    private static final int BREAKER_SLOW_CALL_DURATION_DEFAULT = 10000;
+    private static final int BREAKER_OPEN_DURATION_DEFAULT = 30;
+    private static final int STALE_CACHE_ENTRIES = 200;
+    /** Defines the estimated heap the stale responses may take, and the largest response cached */
+    private static final long STALE_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final long STALE_CACHE_ENTRY_BYTES = STALE_CACHE_BYTES / 8;
+    /** Defines the default number of documents from which a result page is stored by column */
+    private static final int COLUMNAR_THRESHOLD_DEFAULT = 500;
+    /** Defines the leading wildcard guard, see the Leading Wildcard Policy property */
+    private static final String LEADING_WILDCARD_ALLOW = "allow";
+    private static final String LEADING_WILDCARD_WARN = "warn";
+    private static final String LEADING_WILDCARD_REJECT = "reject";
+    private static final int LEADING_WILDCARD_LIMIT_DEFAULT = 1000000;
+    /** Defines the field delta searches compare the watermark with when none is configured */
+    private static final String DELTA_WATERMARK_FIELD_DEFAULT = "_version_";
+    /** Defines the default memory bound of the entity cache in megabytes */
+    private static final int ENTITY_CACHE_MEMORY_DEFAULT = 16;
+    /** Defines the size of the hot query profile and how often it is saved */
+    private static final int QUERY_PROFILE_MAX_QUERIES = 500;
+    private static final long QUERY_PROFILE_SAVE_INTERVAL = 60000;
+    private static final int WARMUP_QUERY_RATE_DEFAULT = 2;
+    /** Defines the default heap budget of a result page in megabytes */
+    private static final int RESULT_MEMORY_BUDGET_DEFAULT = 64;
+    /** Set on threads whose queries are not recorded in the query profile */
+    private static final ThreadLocal<Boolean> PROFILE_SUPPRESSED = new ThreadLocal<Boolean>();
+    /** The deadline (System.nanoTime) of the bridge request the thread is running */
+    private static final ThreadLocal<Long> REQUEST_DEADLINE = new ThreadLocal<Long>();
+
     private String username;
     private String password;
     private String apiEndpoint;
+    private List<String> warmupStructures;
+    private CloseableHttpClient client;
+    private ExecutorService executor;
+    private SolrSchemaCache schemaCache;
+    private boolean realTimeGet;
+    private int concurrencyLimit;
+    private int requestTimeout;
+    private int retryAttempts;
+    private boolean hedgeRequests;
+    private int breakerFailureRate;
+    private int breakerSlowCallRate;
+    private int breakerSlowCallDuration;
+    private int breakerOpenDuration;
+    private int staleTolerance;
+    private boolean responseCompression;
+    private int columnarThreshold;
+    private Map<String, Map<String, Map<String, String>>> wildcardRewrites;
+    private String leadingWildcardPolicy;
+    private int leadingWildcardLimit;
+    private String deltaWatermarkField;
+    private String deltaDeletedField;
+    private SolrEntityCache entityCache;
+    private SolrQueryProfile queryProfile;
+    private int warmupQueryCount;
+    private int warmupQueryRate;
+    private int maxPageSize;
+    private long resultMemoryBudget;
+    private int resultChunkSize;
+    private final ConcurrentHashMap<String, SolrCircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, SolrCircuitBreaker>();
+    private final SolrResponseCache responseCache = new SolrResponseCache(STALE_CACHE_ENTRIES, STALE_CACHE_BYTES, STALE_CACHE_ENTRY_BYTES);
+    private final ConcurrentHashMap<String, SolrLatencyTracker> latencyTrackers = new ConcurrentHashMap<String, SolrLatencyTracker>();
+    private final ConcurrentHashMap<String, SolrConcurrencyLimiter> limiters = new ConcurrentHashMap<String, SolrConcurrencyLimiter>();
+    private final SolrMetrics metrics = new SolrMetrics();
+    private volatile boolean validated = false;
+    private final AtomicBoolean validating = new AtomicBoolean(false);
 
     /** Defines the collection of property names for the adapter */
     public static class Properties {
         public static final String USERNAME = "Username";
         public static final String PASSWORD = "Password";
         public static final String API_URL = "Solr URL";
+        public static final String DEFER_VALIDATION = "Defer Validation";
+        public static final String WARMUP_STRUCTURES = "Warm-up Structures";
+        public static final String SCHEMA_CACHE_TTL = "Schema Cache TTL";
+        public static final String REAL_TIME_GET = "Use Real-time Get";
+        public static final String CONCURRENCY_LIMIT = "Concurrency Limit";
+        public static final String REQUEST_TIMEOUT = "Request Timeout";
+        public static final String RETRY_ATTEMPTS = "Retry Attempts";
+        public static final String HEDGE_REQUESTS = "Hedge Requests";
+        public static final String BREAKER_FAILURE_RATE = "Circuit Breaker Failure Rate";
+        public static final String BREAKER_SLOW_CALL_RATE = "Circuit Breaker Slow Call Rate";
+        public static final String BREAKER_SLOW_CALL_DURATION = "Circuit Breaker Slow Call Duration";
+        public static final String BREAKER_OPEN_DURATION = "Circuit Breaker Open Duration";
+        public static final String STALE_TOLERANCE = "Stale Response Tolerance";
+        public static final String RESPONSE_COMPRESSION = "Response Compression";
+        public static final String MAX_CONNECTIONS_PER_NODE = "Max Connections Per Node";
+        public static final String COLUMNAR_THRESHOLD = "Columnar Result Threshold";
+        public static final String WILDCARD_REWRITES = "Wildcard Rewrites";
+        public static final String LEADING_WILDCARD_POLICY = "Leading Wildcard Policy";
+        public static final String LEADING_WILDCARD_LIMIT = "Leading Wildcard Document Limit";
+        public static final String DELTA_WATERMARK_FIELD = "Delta Watermark Field";
+        public static final String DELTA_DELETED_FIELD = "Delta Deleted Field";
+        public static final String ENTITY_CACHE_TTL = "Entity Cache TTL";
+        public static final String ENTITY_CACHE_MEMORY = "Entity Cache Memory";
+        public static final String ENTITY_CACHE_VERSION_CHECK = "Entity Cache Version Check";
+        public static final String QUERY_PROFILE_FILE = "Query Profile File";
+        public static final String WARMUP_QUERY_COUNT = "Warm-up Query Count";
+        public static final String WARMUP_QUERY_RATE = "Warm-up Query Rate";
+        public static final String MAX_PAGE_SIZE = "Max Page Size";
+        public static final String RESULT_MEMORY_BUDGET = "Result Memory Budget";
+        public static final String RESULT_CHUNK_SIZE = "Result Chunk Size";
     }
 
     private final ConfigurablePropertyMap properties = new ConfigurablePropertyMap(
         new ConfigurableProperty(Properties.USERNAME),
         new ConfigurableProperty(Properties.PASSWORD).setIsSensitive(true),
-        new ConfigurableProperty(Properties.API_URL)
+        new ConfigurableProperty(Properties.API_URL),
+        new ConfigurableProperty(Properties.DEFER_VALIDATION)
+            .setDescription("When true the Solr connection is validated on the first bridge request instead of on initialize."),
+        new ConfigurableProperty(Properties.WARMUP_STRUCTURES)
+            .setDescription("Comma separated list of structures (cores/collections) that are pinged in the background after initialize."),
+        new ConfigurableProperty(Properties.SCHEMA_CACHE_TTL)
+            .setDescription("Number of seconds the field metadata of a structure is cached. Defaults to 300."),
+        new ConfigurableProperty(Properties.REAL_TIME_GET)
+            .setDescription("When true (the default) retrieves that only match the uniqueKey field use the /get handler."),
+        new ConfigurableProperty(Properties.CONCURRENCY_LIMIT)
+            .setDescription("Maximum number of concurrent requests per structure the adaptive limit can grow to. Defaults to 20."),
+        new ConfigurableProperty(Properties.REQUEST_TIMEOUT)
+            .setDescription("Latency budget of a request in milliseconds, can be overridden by the timeout metadata. Defaults to 30000."),
+        new ConfigurableProperty(Properties.RETRY_ATTEMPTS)
+            .setDescription("Number of times a failed connection or 503 response is retried within the latency budget. Defaults to 1."),
+        new ConfigurableProperty(Properties.HEDGE_REQUESTS)
+            .setDescription("When true a duplicate request is sent once the 95th percentile latency of the structure has passed."),
+        new ConfigurableProperty(Properties.BREAKER_FAILURE_RATE)
+            .setDescription("Percentage of failed recent requests that opens the circuit breaker of a structure. Defaults to 50."),
+        new ConfigurableProperty(Properties.BREAKER_SLOW_CALL_RATE)
+            .setDescription("Percentage of slow recent requests that opens the circuit breaker of a structure. Defaults to 80."),
+        new ConfigurableProperty(Properties.BREAKER_SLOW_CALL_DURATION)
+            .setDescription("Duration in milliseconds from which a request counts as slow. Defaults to 10000."),
+        new ConfigurableProperty(Properties.BREAKER_OPEN_DURATION)
+            .setDescription("Seconds an open circuit breaker rejects requests before probing Solr again. Defaults to 30."),
+        new ConfigurableProperty(Properties.STALE_TOLERANCE)
+            .setDescription("Maximum age in seconds of a cached response served while a circuit breaker is open. Defaults to 0 (disabled)."),
+        new ConfigurableProperty(Properties.RESPONSE_COMPRESSION)
+            .setDescription("When true (the default) gzip/deflate compressed responses are requested for searches and retrieves."),
+        new ConfigurableProperty(Properties.MAX_CONNECTIONS_PER_NODE)
+            .setDescription("Number of persistent connections kept to each Solr node and shared by concurrent bridge queries. Defaults to 20."),
+        new ConfigurableProperty(Properties.COLUMNAR_THRESHOLD)
+            .setDescription("Number of documents from which search results are stored by column instead of one map per record. 0 disables it. Defaults to 500."),
+        new ConfigurableProperty(Properties.WILDCARD_REWRITES)
+            .setDescription("JSON object of structure to field to companion fields, for example {\"techproducts\":{\"name\":{\"reversed\":\"name_rev\",\"ngram\":\"name_ngram\"}}}, that Kinetic DSL endsWith and like matchers are rewritten to."),
+        new ConfigurableProperty(Properties.LEADING_WILDCARD_POLICY)
+            .setDescription("What to do with queries that still contain a leading wildcard on a large structure: allow, warn (the default) or reject."),
+        new ConfigurableProperty(Properties.LEADING_WILDCARD_LIMIT)
+            .setDescription("Number of documents from which a structure counts as large for the Leading Wildcard Policy. Defaults to 1000000."),
+        new ConfigurableProperty(Properties.DELTA_WATERMARK_FIELD)
+            .setDescription("Field that delta searches compare the watermark metadata with, can be overridden by the watermarkField metadata. Defaults to _version_."),
+        new ConfigurableProperty(Properties.DELTA_DELETED_FIELD)
+            .setDescription("Boolean field that flags deleted documents. When set, delta searches return the uniqueKeys of flagged documents in the deleted metadata."),
+        new ConfigurableProperty(Properties.ENTITY_CACHE_TTL)
+            .setDescription("Number of seconds the documents of searches are cached to answer retrieves by uniqueKey. Defaults to 0 (disabled)."),
+        new ConfigurableProperty(Properties.ENTITY_CACHE_MEMORY)
+            .setDescription("Approximate number of megabytes the cached documents may take. Defaults to 16."),
+        new ConfigurableProperty(Properties.ENTITY_CACHE_VERSION_CHECK)
+            .setDescription("Minimum number of seconds between two index version checks of a structure. Cached documents are only served while the version is unchanged. Defaults to 0 (disabled)."),
+        new ConfigurableProperty(Properties.QUERY_PROFILE_FILE)
+            .setDescription("Path of a local file the most frequent bridge queries, with the parameters they were last run with, are saved to every minute."),
+        new ConfigurableProperty(Properties.WARMUP_QUERY_COUNT)
+            .setDescription("Number of the most frequent queries of the query profile replayed in the background after initialize. Defaults to 0."),
+        new ConfigurableProperty(Properties.WARMUP_QUERY_RATE)
+            .setDescription("Maximum number of profiled queries replayed per second. Defaults to 2."),
+        new ConfigurableProperty(Properties.MAX_PAGE_SIZE)
+            .setDescription("Largest pageSize a search may request, larger pages are rejected. Defaults to 0 (no limit)."),
+        new ConfigurableProperty(Properties.RESULT_MEMORY_BUDGET)
+            .setDescription("Approximate number of megabytes of heap the records of a search page may take. Larger pages are spilled to a temporary memory-mapped file. 0 disables it. Defaults to 64."),
+        new ConfigurableProperty(Properties.RESULT_CHUNK_SIZE)
+            .setDescription("Number of documents per Solr request when a search page is larger, so only one chunk of the response is decoded at a time. Requires a Result Memory Budget. Defaults to 0 (disabled).")
     );
 
 
@@ -89,7 +295,138 @@ public class SolrAdapter implements BridgeAdapter {
         this.password = properties.getValue(Properties.PASSWORD);
         // Remove any trailing forward slash.
         this.apiEndpoint = properties.getValue(Properties.API_URL).replaceFirst("(\\/)$", "");
-        testAuthenticationValues(this.apiEndpoint, this.username, this.password);
+        this.warmupStructures = splitList(properties.getValue(Properties.WARMUP_STRUCTURES));
+        this.realTimeGet = !"false".equalsIgnoreCase(properties.getValue(Properties.REAL_TIME_GET));
+        int schemaCacheTtl = getIntegerProperty(Properties.SCHEMA_CACHE_TTL, SCHEMA_CACHE_TTL_DEFAULT);
+        this.concurrencyLimit = Math.max(1, getIntegerProperty(Properties.CONCURRENCY_LIMIT, CONCURRENCY_LIMIT_DEFAULT));
+        this.limiters.clear();
+        this.requestTimeout = Math.max(1, getIntegerProperty(Properties.REQUEST_TIMEOUT, REQUEST_TIMEOUT_DEFAULT));
+        this.retryAttempts = Math.max(0, getIntegerProperty(Properties.RETRY_ATTEMPTS, RETRY_ATTEMPTS_DEFAULT));
+        this.hedgeRequests = Boolean.parseBoolean(properties.getValue(Properties.HEDGE_REQUESTS));
+        this.latencyTrackers.clear();
+        this.breakerFailureRate = getIntegerProperty(Properties.BREAKER_FAILURE_RATE, BREAKER_FAILURE_RATE_DEFAULT);
+        this.breakerSlowCallRate = getIntegerProperty(Properties.BREAKER_SLOW_CALL_RATE, BREAKER_SLOW_CALL_RATE_DEFAULT);
+        this.breakerSlowCallDuration = getIntegerProperty(Properties.BREAKER_SLOW_CALL_DURATION, BREAKER_SLOW_CALL_DURATION_DEFAULT);
+        this.breakerOpenDuration = getIntegerProperty(Properties.BREAKER_OPEN_DURATION, BREAKER_OPEN_DURATION_DEFAULT);
+        this.staleTolerance = Math.max(0, getIntegerProperty(Properties.STALE_TOLERANCE, 0));
+        this.circuitBreakers.clear();
+        this.responseCompression = !"false".equalsIgnoreCase(properties.getValue(Properties.RESPONSE_COMPRESSION));
+        this.columnarThreshold = Math.max(0, getIntegerProperty(Properties.COLUMNAR_THRESHOLD, COLUMNAR_THRESHOLD_DEFAULT));
+        this.wildcardRewrites = parseWildcardRewrites(properties.getValue(Properties.WILDCARD_REWRITES));
+        this.leadingWildcardPolicy = StringUtils.defaultIfBlank(
+            properties.getValue(Properties.LEADING_WILDCARD_POLICY), LEADING_WILDCARD_WARN).trim().toLowerCase();
+        if (Arrays.asList(LEADING_WILDCARD_ALLOW, LEADING_WILDCARD_WARN, LEADING_WILDCARD_REJECT).contains(leadingWildcardPolicy) == false) {
+            throw new BridgeError(String.format("The \"%s\" property value (%s) is not valid. Valid options are: %s",
+                Properties.LEADING_WILDCARD_POLICY, leadingWildcardPolicy,
+                Arrays.asList(LEADING_WILDCARD_ALLOW, LEADING_WILDCARD_WARN, LEADING_WILDCARD_REJECT)));
+        }
+        this.leadingWildcardLimit = getIntegerProperty(Properties.LEADING_WILDCARD_LIMIT, LEADING_WILDCARD_LIMIT_DEFAULT);
+        this.deltaWatermarkField = StringUtils.defaultIfBlank(
+            StringUtils.trimToNull(properties.getValue(Properties.DELTA_WATERMARK_FIELD)), DELTA_WATERMARK_FIELD_DEFAULT);
+        this.deltaDeletedField = StringUtils.trimToNull(properties.getValue(Properties.DELTA_DELETED_FIELD));
+        int entityCacheTtl = Math.max(0, getIntegerProperty(Properties.ENTITY_CACHE_TTL, 0));
+        int entityCacheMemory = Math.max(0, getIntegerProperty(Properties.ENTITY_CACHE_MEMORY, ENTITY_CACHE_MEMORY_DEFAULT));
+        int entityCacheVersionCheck = Math.max(0, getIntegerProperty(Properties.ENTITY_CACHE_VERSION_CHECK, 0));
+        String queryProfileFile = StringUtils.trimToNull(properties.getValue(Properties.QUERY_PROFILE_FILE));
+        this.warmupQueryCount = Math.max(0, getIntegerProperty(Properties.WARMUP_QUERY_COUNT, 0));
+        this.warmupQueryRate = Math.max(1, getIntegerProperty(Properties.WARMUP_QUERY_RATE, WARMUP_QUERY_RATE_DEFAULT));
+        this.maxPageSize = Math.max(0, getIntegerProperty(Properties.MAX_PAGE_SIZE, 0));
+        this.resultMemoryBudget = Math.max(0, getIntegerProperty(Properties.RESULT_MEMORY_BUDGET, RESULT_MEMORY_BUDGET_DEFAULT)) * 1024L * 1024L;
+        this.resultChunkSize = Math.max(0, getIntegerProperty(Properties.RESULT_CHUNK_SIZE, 0));
+
+        // Release the client and background threads of a previous configuration.
+        shutdown();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS_TOTAL);
+        connectionManager.setDefaultMaxPerRoute(
+            getIntegerProperty(Properties.MAX_CONNECTIONS_PER_NODE, MAX_CONNECTIONS_PER_ROUTE));
+        connectionManager.setValidateAfterInactivity(CONNECTION_VALIDATE_AFTER_INACTIVITY);
+        // Bounds the requests that are not sent with a deadline of their own, like warm-up pings.
+        this.client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(requestTimeout)
+                .setConnectTimeout(requestTimeout)
+                .setSocketTimeout(requestTimeout)
+                .build())
+            .build();
+        this.executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+        this.schemaCache = new SolrSchemaCache(
+            new SolrSchemaCache.Loader() {
+                @Override
+                public SolrSchema load(String structure, long deadline) throws BridgeError {
+                    return loadSchema(structure, deadline);
+                }
+            },
+            this.executor,
+            schemaCacheTtl * 1000L,
+            requestTimeout
+        );
+        if (staleTolerance > 0) {
+            metrics.registerGauge("staleCache.entries", new SolrMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return responseCache.size();
+                }
+            });
+            metrics.registerGauge("staleCache.bytes", new SolrMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return responseCache.getBytes();
+                }
+            });
+        }
+        this.entityCache = null;
+        if (entityCacheTtl > 0 && entityCacheMemory > 0) {
+            final SolrEntityCache cache = new SolrEntityCache(
+                entityCacheMemory * 1024L * 1024L,
+                entityCacheTtl * 1000L,
+                entityCacheVersionCheck * 1000L,
+                new SolrEntityCache.VersionLoader() {
+                    @Override
+                    public String load(String structure) throws BridgeError {
+                        return loadIndexVersion(structure, getDeadline());
+                    }
+                }
+            );
+            metrics.registerGauge("entityCache.entries", new SolrMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return cache.size();
+                }
+            });
+            metrics.registerGauge("entityCache.bytes", new SolrMetrics.Gauge() {
+                @Override
+                public long getValue() {
+                    return cache.getBytes();
+                }
+            });
+            this.entityCache = cache;
+        }
+        this.queryProfile = null;
+        if (queryProfileFile != null) {
+            this.queryProfile = new SolrQueryProfile(
+                new File(queryProfileFile), QUERY_PROFILE_MAX_QUERIES, QUERY_PROFILE_SAVE_INTERVAL);
+            try {
+                queryProfile.load();
+            } catch (IOException e) {
+                logger.warn(String.format("Unable to load the query profile, starting a new one: %s", e.getMessage()));
+            }
+        }
+        this.validated = false;
+
+        if (Boolean.parseBoolean(properties.getValue(Properties.DEFER_VALIDATION)) == false) {
+            validateConnection(System.nanoTime() + requestTimeout * 1000000L);
+        }
+        if (warmupStructures.isEmpty() == false || (queryProfile != null && warmupQueryCount > 0)) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    warmUp();
+                    replayQueryProfile();
+                }
+            });
+        }
     }
 
     @Override
@@ -112,111 +449,425 @@ public class SolrAdapter implements BridgeAdapter {
         return properties;
     }
 
+    /** Returns a snapshot of the adapter's counters and gauges, keyed by metric name. */
+    public Map<String, Long> getMetrics() {
+        return metrics.snapshot();
+    }
+
     /*---------------------------------------------------------------------------------------------
      * IMPLEMENTATION METHODS
      *-------------------------------------------------------------------------------------------*/
 
     @Override
     public Count count(BridgeRequest request) throws BridgeError {
+        boolean started = startDeadline(request);
+        try {
+            return countWithinDeadline(request);
+        } finally {
+            if (started) REQUEST_DEADLINE.remove();
+        }
+    }
+
+    @Override
+    public Record retrieve(BridgeRequest request) throws BridgeError {
+        boolean started = startDeadline(request);
+        try {
+            return retrieveWithinDeadline(request);
+        } finally {
+            if (started) REQUEST_DEADLINE.remove();
+        }
+    }
+
+    @Override
+    public RecordList search(BridgeRequest request) throws BridgeError {
+        // The limit applies to the requested page, not to the wider page of each structure of a
+        // multi-structure search.
+        int pageSize = parsePaginationValue(getPageSize(BridgeUtils.normalizePaginationMetadata(request.getMetadata())), "pageSize");
+        if (maxPageSize > 0 && pageSize > maxPageSize) {
+            throw new BridgeError(String.format("The pageSize metadata (%d) exceeds the maximum page size of %d.",
+                pageSize, maxPageSize));
+        }
+        boolean started = startDeadline(request);
+        try {
+            return searchWithinDeadline(request);
+        } finally {
+            if (started) REQUEST_DEADLINE.remove();
+        }
+    }
+
+    private Count countWithinDeadline(BridgeRequest request) throws BridgeError {
+
+        recordQuery("count", request);
+        List<String> structures = splitList(request.getStructure());
+        if (structures.size() > 1) {
+            return countStructures(structures, request);
+        }
 
         SolrQualificationParser solrParser = new SolrQualificationParser();
-        String jsonResponse = solrQuery("count", request, solrParser);
+        if (solrParser.isStreamingExpression(request.getQuery())) {
+            return new Count(streamQuery(request, solrParser, 0).getCount());
+        }
+        Object jsonResponse = solrQuery("count", request, solrParser).getDocument();
         Long count = JsonPath.parse(jsonResponse).read("$.response.numFound", Long.class);
         // Create and return a Count object.
         return new Count(count);
 
     }
 
-    @Override
-    public Record retrieve(BridgeRequest request) throws BridgeError {
+    private Record retrieveWithinDeadline(BridgeRequest request) throws BridgeError {
+
+        recordQuery("retrieve", request);
+        List<String> structures = splitList(request.getStructure());
+        if (structures.size() > 1) {
+            return retrieveStructures(structures, request);
+        }
 
         SolrQualificationParser solrParser = new SolrQualificationParser();
+        if (solrParser.isStreamingExpression(request.getQuery())) {
+            SolrTupleStream stream = streamQuery(request, solrParser, 1);
+            if (stream.getCount() != 1) {
+                throw new BridgeError("Multiple results matched an expected single match query");
+            }
+            return new Record(extractTupleValues(stream.getTuples().get(0), request.getFields()));
+        }
         String metadataRoot = solrParser.getJsonRootPath(request.getQuery());
         String jsonRootPath = JSON_ROOT_DEFAULT;
         if (StringUtils.isNotBlank(metadataRoot)) {
             jsonRootPath = metadataRoot;
         }
+        SolrSchema.FieldPlan plan = getFieldPlan(request, metadataRoot);
+
+        // Lookups by uniqueKey alone are answered by the entity cache or the real-time get handler.
+        String uniqueKeyValue = plan == null ? null : getUniqueKeyValue(request, solrParser);
+        if (uniqueKeyValue != null && entityCache != null) {
+            Map<String, Object> cached = entityCache.get(request.getStructure(), uniqueKeyValue, plan.getFields());
+            if (cached != null) {
+                metrics.increment("entityCache." + request.getStructure() + ".hits");
+                return new Record(cached);
+            }
+            metrics.increment("entityCache." + request.getStructure() + ".misses");
+        }
+        String queryMethod = "search";
+        if (uniqueKeyValue != null && realTimeGet) {
+            queryMethod = "get";
+        }
 
-        String jsonResponse = solrQuery("search", request, solrParser);
-        DocumentContext jsonDocument = JsonPath.parse(jsonResponse);
-        Object objectRoot = jsonDocument.read(jsonRootPath);
+        SolrResponse response = solrQuery(queryMethod, request, solrParser);
+        DocumentContext jsonDocument = JsonPath.parse(response.getDocument());
+        Object objectRoot;
+        if (queryMethod.equals("get")) {
+            // A real-time get by id returns {"doc": ...}, with a null doc when there is no match.
+            Object document = jsonDocument.read("$.doc");
+            objectRoot = document == null ? Collections.emptyList() : Collections.singletonList(document);
+        } else {
+            objectRoot = jsonDocument.read(jsonRootPath);
+        }
         Record recordResult = new Record(null);
+        if (response.isStale()) {
+            logger.warn("Serving a stale retrieve of the {} structure while its circuit breaker is open", request.getStructure());
+        }
+        if (isPartialResult(jsonDocument)) {
+            logger.warn("Solr returned partial results for a retrieve of the {} structure", request.getStructure());
+        }
 
         if (objectRoot instanceof List) {
             List<Object> listRoot = (List)objectRoot;
             if (listRoot.size() == 1) {
-                Map<String, Object> recordValues = new HashMap();
-                for (String field : request.getFields()) {
-                    try {
-                        recordValues.put(field, JsonPath.parse(listRoot.get(0)).read(field));
-                    } catch (InvalidPathException e) {
-                        recordValues.put(field, null);
-                    }
-                }
-                recordResult = new Record(recordValues);
+                recordResult = new Record(extractRecordValues(listRoot.get(0), request.getFields(), plan));
             } else {
                 throw new BridgeError("Multiple results matched an expected single match query");
             }
         } else if (objectRoot instanceof Map) {
-            Map<String, Object> recordValues = new HashMap();
-            for (String field : request.getFields()) {
-                try {
-                    recordValues.put(field, JsonPath.parse(objectRoot).read(field));
-                } catch (InvalidPathException e) {
-                    recordValues.put(field, null);
-                }
-            }
-            recordResult = new Record(recordValues);
+            recordResult = new Record(extractRecordValues(objectRoot, request.getFields(), plan));
+        }
+        if (uniqueKeyValue != null && entityCache != null && response.isStale() == false) {
+            entityCache.put(request.getStructure(), uniqueKeyValue, recordResult.getRecord());
         }
 
         return recordResult;
 
     }
 
-    @Override
-    public RecordList search(BridgeRequest request) throws BridgeError {
+    private RecordList searchWithinDeadline(BridgeRequest request) throws BridgeError {
 
+        recordQuery("search", request);
+        int pageSize = parsePaginationValue(getPageSize(BridgeUtils.normalizePaginationMetadata(request.getMetadata())), "pageSize");
+        List<String> structures = splitList(request.getStructure());
         SolrQualificationParser solrParser = new SolrQualificationParser();
+        if (structures.size() > 1 && request.getMetadata("watermark") != null) {
+            throw new BridgeError("Delta searches (watermark metadata) only support a single structure.");
+        } else if (structures.size() > 1 && (solrParser.getFacets(request.getQuery(), request.getParameters()) != null
+            || solrParser.isStreamingExpression(request.getQuery()))
+        ) {
+            // Buckets and tuples of different structures can't be merged as sorted documents.
+            throw new BridgeError("Facet and streaming expression searches only support a single structure.");
+        } else if (structures.size() > 1) {
+            return searchStructures(structures, request);
+        }
+
+        if (request.getMetadata("watermark") != null) {
+            return searchDelta(request, solrParser);
+        }
+        if (solrParser.getFacets(request.getQuery(), request.getParameters()) != null) {
+            return searchFacets(request, solrParser);
+        }
+        if (solrParser.isStreamingExpression(request.getQuery())) {
+            return searchStream(request, solrParser);
+        }
         String metadataRoot = solrParser.getJsonRootPath(request.getQuery());
         String jsonRootPath = JSON_ROOT_DEFAULT;
         if (StringUtils.isNotBlank(metadataRoot)) {
             jsonRootPath = metadataRoot;
         }
+        SolrSchema.FieldPlan plan = getFieldPlan(request, metadataRoot);
+        if (plan != null && resultMemoryBudget > 0 && resultChunkSize > 0 && pageSize > resultChunkSize) {
+            return searchChunks(request, solrParser, plan, pageSize);
+        }
 
-        String jsonResponse = solrQuery("search", request, solrParser);
+        SolrResponse response = solrQuery("search", request, solrParser);
         List<Record> recordList = new ArrayList<Record>();
-        DocumentContext jsonDocument = JsonPath.parse(jsonResponse);
+        DocumentContext jsonDocument = JsonPath.parse(response.getDocument());
         Object objectRoot = jsonDocument.read(jsonRootPath);
         Map<String,String> metadata = new LinkedHashMap<String,String>();
-        metadata.put("count",JsonPath.parse(jsonResponse).read("$.response.numFound", String.class));
+        metadata.put("count",jsonDocument.read("$.response.numFound", String.class));
+        if (isPartialResult(jsonDocument)) {
+            metadata.put("partialResults", "true");
+        }
+        if (response.isStale()) {
+            metadata.put("stale", "true");
+            metadata.put("staleAge", String.valueOf(response.getAgeMillis() / 1000));
+        }
 
-        if (objectRoot instanceof List) {
+        if (objectRoot instanceof List && plan != null && resultMemoryBudget > 0
+            && SolrPageBuffer.exceedsBudget((List)objectRoot, resultMemoryBudget)
+        ) {
+            // The page does not fit in the memory budget, its records are read from a spill file.
+            List<Object> listRoot = (List)objectRoot;
+            metadata.put("size", String.valueOf(listRoot.size()));
+            try (SolrPageBuffer buffer = new SolrPageBuffer(plan.getFields(), 0)) {
+                for (Object document : listRoot) {
+                    buffer.add(plan.extract(document));
+                }
+                return new RecordList(request.getFields(), finishPage(request.getStructure(), buffer), metadata);
+            } catch (IOException e) {
+                throw new BridgeError("Unable to spill the search results to a temporary file.", e);
+            }
+        } else if (objectRoot instanceof List && plan != null && columnarThreshold > 0
+            && ((List)objectRoot).size() >= columnarThreshold
+        ) {
+            // Large pages are kept by column, records are only built when they are read.
+            List<Object> listRoot = (List)objectRoot;
+            metadata.put("size", String.valueOf(listRoot.size()));
+            return new RecordList(request.getFields(), SolrColumnarRecords.fromDocuments(plan, listRoot), metadata);
+        } else if (objectRoot instanceof List) {
             List<Object> listRoot = (List)objectRoot;
             metadata.put("size", String.valueOf(listRoot.size()));
+            // Keep the documents for retrieves by uniqueKey, when the uniqueKey was requested.
+            String uniqueKey = entityCache == null || plan == null || response.isStale() ? null : getUniqueKey(request);
+            boolean cacheable = uniqueKey != null && plan.getFields().contains(uniqueKey);
             for (Object arrayElement : listRoot) {
-                Map<String, Object> recordValues = new HashMap();
-                DocumentContext jsonObject = JsonPath.parse(arrayElement);
-                if (request.getFields() != null) {
-                    for (String field : request.getFields()) {
-                        try {
-                            recordValues.put(field, jsonObject.read(field));
-                        } catch (InvalidPathException e) {
-                            recordValues.put(field, null);
-                        }
-                    }
+                Record record = new Record(extractRecordValues(arrayElement, request.getFields(), plan));
+                if (cacheable) {
+                    entityCache.put(request.getStructure(), record.getValue(uniqueKey), record.getRecord());
                 }
-                recordList.add(new Record(recordValues));
+                recordList.add(record);
             }
         } else if (objectRoot instanceof Map) {
             metadata.put("size", "1");
-            Map<String, Object> recordValues = new HashMap();
-            DocumentContext jsonObject = JsonPath.parse(objectRoot);
-            for (String field : request.getFields()) {
-                recordValues.put(field, jsonObject.read(field));
+            recordList.add(new Record(extractRecordValues(objectRoot, request.getFields(), plan)));
+        }
+
+        return new RecordList(request.getFields(), recordList, metadata);
+
+    }
+
+
+    /**
+     * Searches the page in chunks of the Result Chunk Size, so only the response of one chunk is
+     * decoded at a time, and collects the records in a buffer that spills them to a temporary file
+     * once they exceed the Result Memory Budget. The chunks are sorted with the uniqueKey as the
+     * last sort field and share the deadline of the bridge request.
+     */
+    private RecordList searchChunks(BridgeRequest request, SolrQualificationParser solrParser,
+        SolrSchema.FieldPlan plan, int pageSize
+    ) throws BridgeError {
+
+        Map<String,String> paginationMetadata = BridgeUtils.normalizePaginationMetadata(request.getMetadata());
+        int offset = parsePaginationValue(getOffset(paginationMetadata), "offset");
+        Map<String,String> metadata = new LinkedHashMap<String,String>();
+        // Every chunk runs within the deadline of the bridge request, not a timeout of its own.
+        long deadline = getDeadline();
+        try (SolrPageBuffer buffer = new SolrPageBuffer(plan.getFields(), resultMemoryBudget)) {
+            int size = 0;
+            while (size < pageSize) {
+                if (remainingMillis(deadline) <= 0) {
+                    throw new BridgeError(String.format(
+                        "The request timeout of the %s structure passed after %d of %d records were searched.",
+                        request.getStructure(), size, pageSize));
+                }
+                int rows = Math.min(resultChunkSize, pageSize - size);
+                Map<String,String> chunkMetadata = new HashMap<String,String>();
+                if (request.getMetadata() != null) chunkMetadata.putAll(request.getMetadata());
+                chunkMetadata.put("pageSize", String.valueOf(rows));
+                chunkMetadata.put("offset", String.valueOf(offset + size));
+                BridgeRequest chunkRequest = copyRequest(request, request.getStructure(), request.getFields(), chunkMetadata);
+
+                SolrResponse response = solrQuery("chunk", chunkRequest, solrParser);
+                DocumentContext jsonDocument = JsonPath.parse(response.getDocument());
+                if (size == 0) {
+                    metadata.put("count", jsonDocument.read("$.response.numFound", String.class));
+                }
+                if (isPartialResult(jsonDocument)) {
+                    metadata.put("partialResults", "true");
+                }
+                if (response.isStale()) {
+                    metadata.put("stale", "true");
+                    metadata.put("staleAge", String.valueOf(response.getAgeMillis() / 1000));
+                }
+                List<Object> documents = jsonDocument.read(JSON_ROOT_DEFAULT);
+                for (Object document : documents) {
+                    buffer.add(plan.extract(document));
+                }
+                size += documents.size();
+                if (documents.size() < rows) break;
+            }
+            metadata.put("size", String.valueOf(size));
+            return new RecordList(request.getFields(), finishPage(request.getStructure(), buffer), metadata);
+        } catch (IOException e) {
+            throw new BridgeError("Unable to spill the search results to a temporary file.", e);
+        }
+
+    }
+
+    /** Returns the records of the buffer, counting the spill in the metrics of the structure. */
+    private List<Record> finishPage(String structure, SolrPageBuffer buffer) throws IOException {
+        List<Record> records = buffer.finish();
+        if (buffer.isSpilled()) {
+            metrics.increment("spills." + structure);
+            metrics.add("spilledBytes." + structure, buffer.getSpilledBytes());
+            logger.debug(String.format("Spilled %d records (%d bytes) of a %s search page to a temporary file.",
+                records.size(), buffer.getSpilledBytes(), structure));
+        }
+        return records;
+    }
+
+    /**
+     * Runs the JSON Facet API request declared by the bridge query with rows=0 and returns a record
+     * per bucket, so only the aggregated values are sent back by Solr.
+     */
+    private RecordList searchFacets(BridgeRequest request, SolrQualificationParser solrParser) throws BridgeError {
+
+        SolrResponse response = solrQuery("facet", request, solrParser);
+        DocumentContext jsonDocument = JsonPath.parse(response.getDocument());
+        Map<String,String> metadata = new LinkedHashMap<String,String>();
+        metadata.put("count",jsonDocument.read("$.response.numFound", String.class));
+        if (isPartialResult(jsonDocument)) {
+            metadata.put("partialResults", "true");
+        }
+        if (response.isStale()) {
+            metadata.put("stale", "true");
+            metadata.put("staleAge", String.valueOf(response.getAgeMillis() / 1000));
+        }
+
+        Object facets = ((Map<String, Object>)response.getDocument()).get("facets");
+        SolrFacets result = SolrFacets.fromResponse(
+            facets instanceof Map ? (Map<String, Object>)facets : null, request.getFields());
+        metadata.put("size", String.valueOf(result.getRecords().size()));
+        return new RecordList(result.getFields(), result.getRecords(), metadata);
+
+    }
+
+
+    /**
+     * Returns the next page of documents changed since the watermark metadata, in watermark then
+     * uniqueKey order, using a cursor instead of an offset. The metadata of the result holds the
+     * nextCursorMark, the highWatermark seen so far, whether the delta is complete and, when a
+     * deleted field is configured, the uniqueKeys of the documents flagged as deleted.
+     */
+    private RecordList searchDelta(BridgeRequest request, SolrQualificationParser solrParser) throws BridgeError {
+
+        String uniqueKey = getUniqueKey(request);
+        if (uniqueKey == null) {
+            throw new BridgeError(String.format(
+                "Delta searches need the uniqueKey of the %s structure, which could not be read from its schema.",
+                request.getStructure()));
+        }
+        String watermarkField = getWatermarkField(request);
+        String deletedField = getDeletedField(request);
+        List<String> requestFields = request.getFields() == null ? new ArrayList<String>() : request.getFields();
+
+        // The watermark, uniqueKey and deleted flag are read from every document, requested or not.
+        List<String> fields = new ArrayList<String>(requestFields);
+        for (String field : Arrays.asList(watermarkField, uniqueKey, deletedField)) {
+            if (field != null && fields.contains(field) == false) fields.add(field);
+        }
+        BridgeRequest deltaRequest = copyRequest(request, request.getStructure(), fields, request.getMetadata());
+        SolrSchema.FieldPlan plan = getFieldPlan(deltaRequest, null);
+
+        SolrResponse response = solrQuery("delta", deltaRequest, solrParser);
+        DocumentContext jsonDocument = JsonPath.parse(response.getDocument());
+        List<Object> documents = jsonDocument.read("$.response.docs");
+        String cursorMark = getCursorMark(request);
+        String nextCursorMark = jsonDocument.read("$.nextCursorMark", String.class);
+
+        List<Record> recordList = new ArrayList<Record>();
+        List<Object> deleted = new ArrayList<Object>();
+        Object highWatermark = null;
+        for (Object document : documents) {
+            Map<String, Object> values = plan.extract(document);
+            if (values.get(watermarkField) != null) highWatermark = values.get(watermarkField);
+            if (deletedField != null && "true".equals(String.valueOf(values.get(deletedField)))) {
+                deleted.add(values.get(uniqueKey));
+                continue;
+            }
+            Map<String, Object> recordValues = new LinkedHashMap<String, Object>();
+            for (String field : requestFields) {
+                recordValues.put(field, values.get(field));
             }
             recordList.add(new Record(recordValues));
         }
+        // An empty page keeps the high watermark of the previous pages.
+        if (highWatermark == null) {
+            highWatermark = StringUtils.defaultString(request.getMetadata("highWatermark"), request.getMetadata("watermark"));
+        }
+        int pageSize = parsePaginationValue(getPageSize(BridgeUtils.normalizePaginationMetadata(request.getMetadata())), "pageSize");
 
+        Map<String,String> metadata = new LinkedHashMap<String,String>();
+        metadata.put("count",jsonDocument.read("$.response.numFound", String.class));
+        metadata.put("size", String.valueOf(recordList.size()));
+        metadata.put("nextCursorMark", nextCursorMark);
+        metadata.put("highWatermark", String.valueOf(highWatermark));
+        metadata.put("complete", String.valueOf(documents.size() < pageSize || cursorMark.equals(nextCursorMark)));
+        if (deletedField != null) {
+            metadata.put("deleted", JSONValue.toJSONString(deleted));
+        }
+        if (response.isStale()) {
+            metadata.put("stale", "true");
+            metadata.put("staleAge", String.valueOf(response.getAgeMillis() / 1000));
+        }
+        return new RecordList(requestFields, recordList, metadata);
+
+    }
+
+    /**
+     * Runs the streaming expression of the bridge query and returns the tuples of the requested
+     * page. Tuples past the page are counted while they are decoded but not kept.
+     */
+    private RecordList searchStream(BridgeRequest request, SolrQualificationParser solrParser) throws BridgeError {
+
+        Map<String,String> paginationMetadata = BridgeUtils.normalizePaginationMetadata(request.getMetadata());
+        int pageSize = parsePaginationValue(getPageSize(paginationMetadata), "pageSize");
+        int offset = parsePaginationValue(getOffset(paginationMetadata), "offset");
+        SolrTupleStream stream = streamQuery(request, solrParser, offset + pageSize);
+
+        List<Record> recordList = new ArrayList<Record>();
+        List<Map<String, Object>> tuples = stream.getTuples();
+        for (int i = Math.min(offset, tuples.size()); i < tuples.size(); i++) {
+            recordList.add(new Record(extractTupleValues(tuples.get(i), request.getFields())));
+        }
+        Map<String,String> metadata = new LinkedHashMap<String,String>();
+        metadata.put("count", String.valueOf(stream.getCount()));
+        metadata.put("size", String.valueOf(recordList.size()));
         return new RecordList(request.getFields(), recordList, metadata);
 
     }
@@ -233,25 +884,24 @@ public class SolrAdapter implements BridgeAdapter {
         StringBuilder url = new StringBuilder();
 
         Map<String,String> metadata = BridgeUtils.normalizePaginationMetadata(request.getMetadata());
-        String pageSize = "1000";
-        String offset = "0";
-
-        if (StringUtils.isNotBlank(metadata.get("pageSize")) && metadata.get("pageSize").equals("0") == false) {
-            pageSize = metadata.get("pageSize");
-        }
-        if (StringUtils.isNotBlank(metadata.get("offset"))) {
-            offset = metadata.get("offset");
-        }
+        String pageSize = getPageSize(metadata);
+        String offset = getOffset(metadata);
 
         url.append(this.apiEndpoint)
             .append("/")
             .append(request.getStructure())
-            .append("/select")
+            .append(queryMethod.equals("get") ? "/get" : queryMethod.equals("stream") ? "/stream" : "/select")
             .append("?wt=json");
 
         //Set row count to 0 if doing a count.
-        if (queryMethod.equals("count")) {
+        if (queryMethod.equals("get") || queryMethod.equals("stream")) {
+            // Real-time get requests are limited by the id parameter, streams by their expression.
+        } else if (queryMethod.equals("count") || queryMethod.equals("facet")) {
             url.append("&rows=0");
+        } else if (queryMethod.equals("delta")) {
+            // Cursors replace the offset, Solr requires start=0 with a cursorMark.
+            url.append("&rows=" + pageSize)
+                .append("&start=0");
         } else {
             url.append("&rows=" + pageSize)
                 .append("&start=" + offset);
@@ -266,26 +916,89 @@ public class SolrAdapter implements BridgeAdapter {
         List<NameValuePair> params = new ArrayList<NameValuePair>();
         HttpEntity result = null;
 
+        Map<String, Map<String, String>> structureRewrites = wildcardRewrites.get(request.getStructure());
+        solrParser.setWildcardRewrites(structureRewrites);
+        if (structureRewrites != null) solrParser.setSchema(getSchema(request.getStructure()));
         String query = solrParser.parse(request.getQuery(),request.getParameters());
         //Set query to return everything if no qualification defined.
         if (StringUtils.isBlank(query)) {
             query = "*:*";
         }
 
+        // Streaming expressions hold the whole query, including fields and sorting.
+        if (queryMethod.equals("stream")) {
+            params.add(new BasicNameValuePair("expr", query));
+            logger.trace(String.format("Streaming expression being sent to solr: %s", query));
+        // Real-time get requests only take the uniqueKey value and the field list.
+        } else if (queryMethod.equals("get")) {
+            // The single valued id parameter, ids would split a uniqueKey value on its commas.
+            params.add(new BasicNameValuePair("id", getUniqueKeyValue(request, solrParser)));
         // If the query is a JSON object...
-        if (query.matches("^\\s*\\{.*?\\}\\s*$")) {
+        } else if (query.matches("^\\s*\\{.*?\\}\\s*$")) {
+            if (queryMethod.equals("delta") && getDeletedField(request) != null) {
+                throw new BridgeError("Delta searches with a deleted field require a Lucene query.");
+            }
             params.add(new BasicNameValuePair("json", query));
             logger.trace(String.format("JSON Query being sent to solr: %s", query));
         } else {
+            checkLeadingWildcards(request.getStructure(), query);
+            // Documents flagged as deleted no longer match the query but must still be reported.
+            if (queryMethod.equals("delta") && getDeletedField(request) != null) {
+                query = String.format("(%s) OR %s:true", query, getDeletedField(request));
+            }
             params.add(new BasicNameValuePair("q", query));
             logger.trace(String.format("Lucene Query being sent to solr: %s", query));
         }
 
+        // Changed documents are filtered by the watermark and paged by cursor in a stable order.
+        if (queryMethod.equals("delta")) {
+            String watermarkField = getWatermarkField(request);
+            String watermark = request.getMetadata("watermark");
+            if (StringUtils.isNotBlank(watermark)) {
+                // _version_ values are unique, documents sharing a timestamp with the watermark
+                // may have been indexed after the previous sync so they are read again.
+                params.add(new BasicNameValuePair("fq", String.format(
+                    "%s:%s\"%s\" TO *]",
+                    watermarkField,
+                    watermarkField.equals(DELTA_WATERMARK_FIELD_DEFAULT) ? "{" : "[",
+                    watermark.replace("\\", "\\\\").replace("\"", "\\\"")
+                )));
+            }
+            params.add(new BasicNameValuePair("sort", String.format("%s asc,%s asc", watermarkField, getUniqueKey(request))));
+            params.add(new BasicNameValuePair("cursorMark", getCursorMark(request)));
+        }
+
+        // Let Solr stop collecting hits once most of the request's latency budget is spent. Partial
+        // results would make a delta cursor skip documents.
+        if (queryMethod.equals("get") == false && queryMethod.equals("stream") == false
+            && queryMethod.equals("delta") == false
+        ) {
+            params.add(new BasicNameValuePair(
+                "timeAllowed",
+                String.valueOf(Math.max(1, (long)(remainingMillis(getDeadline()) * TIME_ALLOWED_RATIO)))
+            ));
+        }
+
+        // Aggregations are computed by Solr, the facet request replaces the document fields.
+        if (queryMethod.equals("facet")) {
+            params.add(new BasicNameValuePair("json.facet", solrParser.getFacets(request.getQuery(), request.getParameters())));
+        }
+
         //only set sorting and field return limitation if we're not counting.
-        if (queryMethod.equals("count") == false) {
+        if (queryMethod.equals("count") == false && queryMethod.equals("facet") == false
+            && queryMethod.equals("stream") == false
+        ) {
 
             //only set field limitation if we're not counting *and* the request specified fields to be returned.
-            if (request.getFields() != null && request.getFields().isEmpty() == false) {
+            SolrSchema.FieldPlan plan = getFieldPlan(request, solrParser.getJsonRootPath(request.getQuery()));
+            if (plan != null && request.getFields() != null && request.getFields().isEmpty() == false) {
+                // The compiled plan only lists fields that exist in the schema.
+                if (StringUtils.isNotBlank(plan.getFieldList())) {
+                    params.add(new BasicNameValuePair("fl", plan.getFieldList()));
+                } else if (StringUtils.isNotBlank(getUniqueKey(request))) {
+                    params.add(new BasicNameValuePair("fl", getUniqueKey(request)));
+                }
+            } else if (request.getFields() != null && request.getFields().isEmpty() == false) {
                 StringBuilder includedFields = new StringBuilder();
                 String[] bridgeFields = request.getFieldArray();
                 for (int i = 0; i < request.getFieldArray().length; i++) {
@@ -299,8 +1012,10 @@ public class SolrAdapter implements BridgeAdapter {
                 params.add(new BasicNameValuePair("fl", includedFields.toString()));
             }
             //only set sorting if we're not counting *and* the request specified a sort order.
-            if (request.getMetadata("order") != null) {
-                List<String> orderList = new ArrayList<String>();
+            List<String> orderList = new ArrayList<String>();
+            if (request.getMetadata("order") != null && queryMethod.equals("get") == false
+                && queryMethod.equals("delta") == false
+            ) {
                 //loop over every defined sort order and add them to the Elasicsearch URL
                 for (Map.Entry<String,String> entry : BridgeUtils.parseOrder(request.getMetadata("order")).entrySet()) {
                     String key = entry.getKey();
@@ -311,6 +1026,16 @@ public class SolrAdapter implements BridgeAdapter {
                         orderList.add(String.format("%s asc", key));
                     }
                 }
+            }
+            // Chunks are paged by offset, they only line up when ties are broken by the uniqueKey.
+            String uniqueKey = queryMethod.equals("chunk") ? getUniqueKey(request) : null;
+            if (uniqueKey != null && orderList.contains(uniqueKey + " asc") == false
+                && orderList.contains(uniqueKey + " desc") == false
+            ) {
+                if (orderList.isEmpty()) orderList.add("score desc");
+                orderList.add(uniqueKey + " asc");
+            }
+            if (orderList.isEmpty() == false) {
                 params.add(
                     new BasicNameValuePair(
                         "sort",
@@ -337,72 +1062,814 @@ public class SolrAdapter implements BridgeAdapter {
     /*----------------------------------------------------------------------------------------------
      * PRIVATE HELPER METHODS
      *--------------------------------------------------------------------------------------------*/
+
+    /** Decodes the body of a successful Solr response into the response document. */
+    private interface ResponseDecoder {
+        Object decode(InputStream content, Charset charset) throws IOException;
+    }
+
+    private static final ResponseDecoder JSON_DECODER = new ResponseDecoder() {
+        @Override
+        public Object decode(InputStream content, Charset charset) throws IOException {
+            try {
+                return JSON_PROVIDER.parse(content, charset.name());
+            } catch (InvalidJsonException e) {
+                throw new IOException("The Solr response is not valid JSON.", e);
+            }
+        }
+    };
+
+    /**
+     * Posts the streaming expression of the bridge query to the /stream handler of the structure,
+     * keeping at most maxTuples decoded tuples. An EXCEPTION tuple is raised as a BridgeError.
+     */
+    private SolrTupleStream streamQuery(BridgeRequest request, SolrQualificationParser solrParser, final int maxTuples) throws BridgeError {
+        SolrResponse response = solrQuery("stream", request, solrParser, new ResponseDecoder() {
+            @Override
+            public Object decode(InputStream content, Charset charset) throws IOException {
+                return SolrTupleStream.decode(new InputStreamReader(content, charset), maxTuples);
+            }
+        });
+        SolrTupleStream stream = (SolrTupleStream)response.getDocument();
+        if (stream.getException() != null) {
+            throw new BridgeError(String.format("The Solr streaming expression failed: %s", stream.getException()));
+        }
+        return stream;
+    }
+
+    private Map<String, Object> extractTupleValues(Map<String, Object> tuple, List<String> fields) {
+        if (fields == null || fields.isEmpty()) return tuple;
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (String field : fields) {
+            values.put(field, tuple.get(field));
+        }
+        return values;
+    }
+
+    /** A query run against a single structure of a multi-structure request. */
+    private interface StructureQuery<T> {
+        T run(BridgeRequest request) throws BridgeError;
+    }
+
+    private Count countStructures(List<String> structures, BridgeRequest request) throws BridgeError {
+        Map<String, Count> counts = queryStructures(structures, request, request.getFields(), request.getMetadata(),
+            new StructureQuery<Count>() {
+                @Override
+                public Count run(BridgeRequest structureRequest) throws BridgeError {
+                    return count(structureRequest);
+                }
+            }, new LinkedHashMap<String, Long>());
+        long total = 0;
+        for (Count count : counts.values()) {
+            total += count.getValue();
+        }
+        return new Count(total);
+    }
+
+    private Record retrieveStructures(List<String> structures, BridgeRequest request) throws BridgeError {
+        // Two documents per structure are enough to tell a single match from multiple matches.
+        Map<String,String> metadata = new HashMap<String,String>();
+        metadata.put("pageSize", "2");
+        metadata.put("offset", "0");
+        BridgeRequest searchRequest = copyRequest(request, request.getStructure(), request.getFields(), metadata);
+        List<Record> records = searchStructures(structures, searchRequest).getRecords();
+        if (records.size() != 1) {
+            throw new BridgeError("Multiple results matched an expected single match query");
+        }
+        return records.get(0);
+    }
+
+    /**
+     * Searches every structure in parallel for the first offset + pageSize documents, then merges
+     * the sorted pages and applies the offset and page size to the merged result.
+     */
+    private RecordList searchStructures(List<String> structures, BridgeRequest request) throws BridgeError {
+        Map<String,String> metadata = BridgeUtils.normalizePaginationMetadata(request.getMetadata());
+        int pageSize = parsePaginationValue(getPageSize(metadata), "pageSize");
+        int offset = parsePaginationValue(getOffset(metadata), "offset");
+        Map<String,String> order = request.getMetadata("order") == null
+            ? new LinkedHashMap<String,String>()
+            : BridgeUtils.parseOrder(request.getMetadata("order"));
+
+        // The order fields are needed to merge the pages, even when they were not requested.
+        List<String> requestFields = request.getFields() == null ? new ArrayList<String>() : request.getFields();
+        List<String> fields = new ArrayList<String>(requestFields);
+        for (String field : order.keySet()) {
+            if (fields.contains(field) == false) fields.add(field);
+        }
+        Map<String,String> structureMetadata = new HashMap<String,String>(metadata);
+        structureMetadata.put("pageSize", String.valueOf(offset + pageSize));
+        structureMetadata.put("offset", "0");
+
+        Map<String, Long> timings = new LinkedHashMap<String, Long>();
+        Map<String, RecordList> results = queryStructures(structures, request, fields, structureMetadata,
+            new StructureQuery<RecordList>() {
+                @Override
+                public RecordList run(BridgeRequest structureRequest) throws BridgeError {
+                    return searchWithinDeadline(structureRequest);
+                }
+            }, timings);
+
+        long count = 0;
+        List<List<Record>> pages = new ArrayList<List<Record>>();
+        Map<String,String> resultMetadata = new LinkedHashMap<String,String>();
+        for (RecordList result : results.values()) {
+            pages.add(result.getRecords());
+            Map<String,String> pageMetadata = result.getMetadata();
+            count += Long.parseLong(pageMetadata.get("count"));
+            if (pageMetadata.containsKey("partialResults")) resultMetadata.put("partialResults", "true");
+            if (pageMetadata.containsKey("stale")) resultMetadata.put("stale", "true");
+        }
+        List<Record> records = new SolrRecordMerger(order).merge(pages, offset, pageSize);
+        if (fields.size() > requestFields.size()) {
+            List<Record> projected = new ArrayList<Record>(records.size());
+            for (Record record : records) {
+                Map<String, Object> values = new LinkedHashMap<String, Object>();
+                for (String field : requestFields) {
+                    values.put(field, record.getValue(field));
+                }
+                projected.add(new Record(values));
+            }
+            records = projected;
+        }
+
+        resultMetadata.put("count", String.valueOf(count));
+        resultMetadata.put("size", String.valueOf(records.size()));
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            resultMetadata.put("timing." + timing.getKey(), String.valueOf(timing.getValue()));
+        }
+        return new RecordList(requestFields, records, resultMetadata);
+    }
+
+    /**
+     * Runs the query against every structure on the executor and waits for all of them. The
+     * milliseconds each structure took are added to the timings, in structure order.
+     */
+    private <T> Map<String, T> queryStructures(List<String> structures, BridgeRequest request, List<String> fields,
+        Map<String,String> metadata, final StructureQuery<T> query, Map<String, Long> timings
+    ) throws BridgeError {
+        final Map<String, Long> durations = new ConcurrentHashMap<String, Long>();
+        final Long deadline = REQUEST_DEADLINE.get();
+        Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+        try {
+            for (final String structure : structures) {
+                final BridgeRequest structureRequest = copyRequest(request, structure, fields, metadata);
+                futures.put(structure, executor.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws BridgeError {
+                        long start = System.nanoTime();
+                        // The multi-structure request has been profiled already.
+                        PROFILE_SUPPRESSED.set(Boolean.TRUE);
+                        // Every structure shares the deadline of the multi-structure request.
+                        REQUEST_DEADLINE.set(deadline);
+                        try {
+                            return query.run(structureRequest);
+                        } finally {
+                            PROFILE_SUPPRESSED.remove();
+                            REQUEST_DEADLINE.remove();
+                            durations.put(structure, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        }
+                    }
+                }));
+            }
+            Map<String, T> results = new LinkedHashMap<String, T>();
+            for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+                timings.put(future.getKey(), durations.get(future.getKey()));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BridgeError("Interrupted while querying the structures " + structures, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BridgeError) throw (BridgeError)e.getCause();
+            throw new BridgeError("Unable to query the structures " + structures, e.getCause());
+        } finally {
+            // Stop the remaining queries once one structure failed.
+            for (Future<T> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static BridgeRequest copyRequest(BridgeRequest request, String structure, List<String> fields,
+        Map<String,String> metadata
+    ) {
+        BridgeRequest copy = new BridgeRequest();
+        copy.setStructure(structure);
+        copy.setFields(fields);
+        copy.setQuery(request.getQuery());
+        copy.setParameters(request.getParameters());
+        copy.setMetadata(metadata);
+        return copy;
+    }
+
+    private String getWatermarkField(BridgeRequest request) {
+        return StringUtils.defaultIfBlank(request.getMetadata("watermarkField"), deltaWatermarkField);
+    }
+
+    private String getDeletedField(BridgeRequest request) {
+        return StringUtils.defaultIfBlank(request.getMetadata("deletedField"), deltaDeletedField);
+    }
+
+    private static String getCursorMark(BridgeRequest request) {
+        return StringUtils.defaultIfBlank(request.getMetadata("cursorMark"), "*");
+    }
+
+    private static String getPageSize(Map<String,String> metadata) {
+        String pageSize = metadata.get("pageSize");
+        return StringUtils.isNotBlank(pageSize) && pageSize.equals("0") == false ? pageSize : "1000";
+    }
+
+    private static String getOffset(Map<String,String> metadata) {
+        String offset = metadata.get("offset");
+        return StringUtils.isNotBlank(offset) ? offset : "0";
+    }
+
+    private static int parsePaginationValue(String value, String name) throws BridgeError {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BridgeError(String.format("The %s metadata must be an integer, found \"%s\".", name, value), e);
+        }
+    }
+
+    /** Returns the concurrency limiter of the structure, registering its metrics on first use. */
+    private SolrConcurrencyLimiter getLimiter(final String structure) {
+        SolrConcurrencyLimiter limiter = limiters.get(structure);
+        if (limiter == null) {
+            SolrConcurrencyLimiter created = new SolrConcurrencyLimiter(
+                Math.max(1, concurrencyLimit / 2),
+                1,
+                concurrencyLimit,
+                LIMITER_LATENCY_TOLERANCE,
+                LIMITER_BACKOFF_RATIO
+            );
+            limiter = limiters.putIfAbsent(structure, created);
+            if (limiter == null) {
+                limiter = created;
+                final SolrConcurrencyLimiter registered = created;
+                metrics.registerGauge("limiter." + structure + ".limit", new SolrMetrics.Gauge() {
+                    @Override
+                    public long getValue() {
+                        return registered.getLimit();
+                    }
+                });
+                metrics.registerGauge("limiter." + structure + ".inFlight", new SolrMetrics.Gauge() {
+                    @Override
+                    public long getValue() {
+                        return registered.getInFlight();
+                    }
+                });
+            }
+        }
+        return limiter;
+    }
+
+    /** Returns the circuit breaker of the endpoint and structure, registering its state gauge on first use. */
+    private SolrCircuitBreaker getCircuitBreaker(String structure) {
+        String key = this.apiEndpoint + "/" + structure;
+        SolrCircuitBreaker breaker = circuitBreakers.get(key);
+        if (breaker == null) {
+            SolrCircuitBreaker created = new SolrCircuitBreaker(
+                BREAKER_WINDOW_SIZE,
+                BREAKER_MINIMUM_CALLS,
+                breakerFailureRate,
+                breakerSlowCallRate,
+                breakerSlowCallDuration,
+                breakerOpenDuration * 1000L,
+                BREAKER_HALF_OPEN_CALLS
+            );
+            breaker = circuitBreakers.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+                final SolrCircuitBreaker registered = created;
+                metrics.registerGauge("breaker." + structure + ".state", new SolrMetrics.Gauge() {
+                    @Override
+                    public long getValue() {
+                        return registered.getState().ordinal();
+                    }
+                });
+            }
+        }
+        return breaker;
+    }
+
+    private SolrLatencyTracker getLatencyTracker(String structure) {
+        SolrLatencyTracker tracker = latencyTrackers.get(structure);
+        if (tracker == null) {
+            SolrLatencyTracker created = new SolrLatencyTracker(LATENCY_SAMPLES);
+            tracker = latencyTrackers.putIfAbsent(structure, created);
+            if (tracker == null) tracker = created;
+        }
+        return tracker;
+    }
+
+    /** Returns the request's latency budget from the timeout metadata or the adapter default. */
+    private int getRequestTimeout(BridgeRequest request) throws BridgeError {
+        String value = request.getMetadata() == null ? null : request.getMetadata("timeout");
+        if (StringUtils.isBlank(value)) return requestTimeout;
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new BridgeError(String.format("The timeout metadata value (%s) is not a valid number of milliseconds.", value), e);
+        }
+    }
+
+    /**
+     * Starts the deadline of a bridge request, unless the thread already runs within the deadline
+     * of an enclosing request. Returns whether the deadline was started.
+     */
+    private boolean startDeadline(BridgeRequest request) throws BridgeError {
+        if (REQUEST_DEADLINE.get() != null) return false;
+        REQUEST_DEADLINE.set(System.nanoTime() + getRequestTimeout(request) * 1000000L);
+        return true;
+    }
+
+    /** Returns the deadline of the bridge request the thread runs, or a new Request Timeout deadline. */
+    private long getDeadline() {
+        Long deadline = REQUEST_DEADLINE.get();
+        return deadline != null ? deadline : System.nanoTime() + requestTimeout * 1000000L;
+    }
+
+    /** Whether Solr stopped collecting hits early, for example because timeAllowed was exceeded. */
+    private boolean isPartialResult(DocumentContext jsonDocument) {
+        Map<String, Object> header = jsonDocument.read("$", Map.class);
+        Object responseHeader = header.get("responseHeader");
+        return responseHeader instanceof Map
+            && Boolean.TRUE.equals(((Map<String, Object>)responseHeader).get("partialResults"));
+    }
+
+    private SolrSchema getSchema(String structure) {
+        return schemaCache == null ? null : schemaCache.get(structure, getDeadline());
+    }
+
+    private String getUniqueKey(BridgeRequest request) {
+        SolrSchema schema = getSchema(request.getStructure());
+        return schema == null ? null : schema.getUniqueKey();
+    }
+
+    /**
+     * Returns the compiled field plan of the request, or null when the schema is not available or
+     * the bridge query points the record root somewhere other than the returned documents.
+     */
+    private SolrSchema.FieldPlan getFieldPlan(BridgeRequest request, String metadataRoot) {
+        if (StringUtils.isNotBlank(metadataRoot)) return null;
+        SolrSchema schema = getSchema(request.getStructure());
+        return schema == null ? null : schema.getPlan(request.getFields());
+    }
+
+    /** Returns the uniqueKey value if the qualification is a plain uniqueKey term match. */
+    private String getUniqueKeyValue(BridgeRequest request, SolrQualificationParser solrParser) throws BridgeError {
+        SolrSchema schema = getSchema(request.getStructure());
+        if (schema == null) return null;
+        String query = solrParser.parse(request.getQuery(), request.getParameters());
+        if (query.matches(SolrQualificationParser.QUERY_PATTERN_JSON)) return null;
+        return schema.getUniqueKeyValue(query);
+    }
+
+    private Map<String, Object> extractRecordValues(Object element, List<String> fields, SolrSchema.FieldPlan plan) {
+        if (plan != null) {
+            return plan.extract(element);
+        }
+        Map<String, Object> recordValues = new HashMap();
+        if (fields != null) {
+            DocumentContext jsonObject = JsonPath.parse(element);
+            for (String field : fields) {
+                try {
+                    recordValues.put(field, jsonObject.read(field));
+                } catch (InvalidPathException e) {
+                    recordValues.put(field, null);
+                }
+            }
+        }
+        return recordValues;
+    }
+
+    private SolrSchema loadSchema(String structure, long deadline) throws BridgeError {
+        HttpGet get = new HttpGet(String.format("%s/%s/schema?wt=json", this.apiEndpoint, structure));
+        get.setConfig(createRequestConfig(deadline));
+        if (this.username != null && this.password != null) {
+            addBasicAuthenticationHeader(get, this.username, this.password);
+        }
+        try {
+            HttpResponse response = client.execute(get);
+            String body = EntityUtils.toString(response.getEntity());
+            Integer responseCode = response.getStatusLine().getStatusCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                throw new BridgeError(String.format("The Solr schema API returned a %s status code, expected 200.", responseCode));
+            }
+            SolrSchema schema = SolrSchema.fromResponse(structure, JsonPath.parse(body).read("$", Map.class));
+            schema.setNumDocs(loadNumDocs(structure, deadline));
+            return schema;
+        } catch (IOException e) {
+            throw new BridgeError("Unable to make a connection to the Solr schema API endpoint.", e);
+        }
+    }
+
+    /** Returns the version of the structure's index, which changes with every commit. */
+    private String loadIndexVersion(String structure, long deadline) throws BridgeError {
+        HttpGet get = new HttpGet(String.format("%s/%s/admin/luke?numTerms=0&show=index&wt=json", this.apiEndpoint, structure));
+        get.setConfig(createRequestConfig(deadline));
+        if (this.username != null && this.password != null) {
+            addBasicAuthenticationHeader(get, this.username, this.password);
+        }
+        try {
+            HttpResponse response = client.execute(get);
+            String body = EntityUtils.toString(response.getEntity());
+            Integer responseCode = response.getStatusLine().getStatusCode();
+            if (responseCode < 200 || responseCode >= 300) {
+                throw new BridgeError(String.format("The Solr luke handler returned a %s status code, expected 200.", responseCode));
+            }
+            return String.valueOf(JsonPath.parse(body).read("$.index.version", Object.class));
+        } catch (IOException | InvalidPathException e) {
+            throw new BridgeError("Unable to read the index version from the Solr luke handler.", e);
+        }
+    }
+
+    /** Returns the number of documents in the structure, or -1 when it could not be determined. */
+    private long loadNumDocs(String structure, long deadline) {
+        HttpGet get = new HttpGet(String.format("%s/%s/select?q=*:*&rows=0&wt=json", this.apiEndpoint, structure));
+        get.setConfig(createRequestConfig(deadline));
+        if (this.username != null && this.password != null) {
+            addBasicAuthenticationHeader(get, this.username, this.password);
+        }
+        try {
+            HttpResponse response = client.execute(get);
+            String body = EntityUtils.toString(response.getEntity());
+            if (response.getStatusLine().getStatusCode() != 200) return -1;
+            return JsonPath.parse(body).read("$.response.numFound", Long.class);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to count the documents of the {} structure", structure, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Applies the leading wildcard policy to a lucene query that still contains a leading wildcard,
+     * which makes Solr scan the whole term dictionary of the field on every shard.
+     */
+    private void checkLeadingWildcards(String structure, String query) throws BridgeError {
+        if (LEADING_WILDCARD_ALLOW.equals(leadingWildcardPolicy)
+            || SolrQualificationParser.hasLeadingWildcard(query) == false
+        ) {
+            return;
+        }
+        SolrSchema schema = getSchema(structure);
+        long numDocs = schema == null ? -1 : schema.getNumDocs();
+        if (numDocs < leadingWildcardLimit) return;
+
+        metrics.increment("leadingWildcards." + structure);
+        if (LEADING_WILDCARD_REJECT.equals(leadingWildcardPolicy)) {
+            throw new BridgeError(String.format(
+                "The query (%s) starts a term with a wildcard, which is not allowed on the %s structure (%d documents). "
+                    + "Configure a companion field in the \"%s\" property or remove the leading wildcard.",
+                query, structure, numDocs, Properties.WILDCARD_REWRITES));
+        }
+        logger.warn("The query ({}) starts a term with a wildcard on the {} structure ({} documents)", query, structure, numDocs);
+    }
+
+    /** Parses the Wildcard Rewrites property, structure to field to companion type to field. */
+    private static Map<String, Map<String, Map<String, String>>> parseWildcardRewrites(String value) throws BridgeError {
+        Map<String, Map<String, Map<String, String>>> result = new HashMap<String, Map<String, Map<String, String>>>();
+        if (StringUtils.isBlank(value)) return result;
+        try {
+            Map<String, Object> structures = (Map<String, Object>)JSONValue.parseWithException(value);
+            for (Map.Entry<String, Object> structure : structures.entrySet()) {
+                Map<String, Map<String, String>> fields = new HashMap<String, Map<String, String>>();
+                for (Map.Entry<String, Object> field : ((Map<String, Object>)structure.getValue()).entrySet()) {
+                    Map<String, String> companions = new HashMap<String, String>();
+                    for (Map.Entry<String, Object> companion : ((Map<String, Object>)field.getValue()).entrySet()) {
+                        companions.put(companion.getKey(), (String)companion.getValue());
+                    }
+                    fields.put(field.getKey(), companions);
+                }
+                result.put(structure.getKey(), fields);
+            }
+        } catch (ParseException | ClassCastException e) {
+            throw new BridgeError(String.format(
+                "The \"%s\" property value (%s) is not a JSON object of structure to field to companion fields.",
+                Properties.WILDCARD_REWRITES, value), e);
+        }
+        return result;
+    }
+
+    private int getIntegerProperty(String name, int defaultValue) throws BridgeError {
+        String value = properties.getValue(name);
+        if (StringUtils.isBlank(value)) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BridgeError(String.format("The \"%s\" property value (%s) is not a valid integer.", name, value), e);
+        }
+    }
+
     private void addBasicAuthenticationHeader(HttpRequestBase get, String username, String password) {
         String creds = String.format("%s:%s", username, password);
         byte[] basicAuthBytes = Base64.encodeBase64(creds.getBytes());
         get.setHeader("Authorization", String.format("Basic %s", new String(basicAuthBytes)));
     }
 
-    private String solrQuery(String queryMethod, BridgeRequest request, SolrQualificationParser solrParser) throws BridgeError{
+    private SolrResponse solrQuery(String queryMethod, BridgeRequest request, SolrQualificationParser solrParser) throws BridgeError{
+        return solrQuery(queryMethod, request, solrParser, JSON_DECODER);
+    }
 
-        String result = null;
-        String url = buildUrl(queryMethod, request);
+    private SolrResponse solrQuery(String queryMethod, BridgeRequest request, SolrQualificationParser solrParser,
+        ResponseDecoder decoder
+    ) throws BridgeError {
 
-        // Initialize the HTTP Client, Response, and Get objects.
-        HttpClient client = HttpClients.createDefault();
-        HttpResponse response;
-        HttpPost post = new HttpPost(url);
+        SolrResponse result = null;
+        String url = buildUrl(queryMethod, request);
+        HttpEntity requestBody = buildRequestBody(queryMethod, request, solrParser);
+        long deadline = getDeadline();
+        if (remainingMillis(deadline) <= 0) {
+            throw new BridgeError(String.format(
+                "The request timeout of the %s structure passed before Solr could be queried.", request.getStructure()));
+        }
+        String cacheKey = staleTolerance > 0 ? getCacheKey(url, requestBody) : null;
+
+        // While Solr is known to be unavailable serve a recent cached response or fail immediately.
+        SolrCircuitBreaker breaker = getCircuitBreaker(request.getStructure());
+        if (breaker.tryAcquire() == false) {
+            SolrResponse cached = cacheKey == null ? null : responseCache.get(cacheKey, staleTolerance * 1000L);
+            if (cached != null) {
+                metrics.increment("breaker." + request.getStructure() + ".staleResponses");
+                logger.debug("Serving a {}ms old cached response while the {} circuit is open", cached.getAgeMillis(), request.getStructure());
+                return cached;
+            }
+            metrics.increment("breaker." + request.getStructure() + ".rejections");
+            throw new SolrCircuitOpenError(
+                String.format(
+                    "The circuit breaker of the %s structure is open after repeated Solr failures, the request was rejected.",
+                    request.getStructure()
+                )
+            );
+        }
 
-        // Append the authentication to the call. This example uses Basic Authentication but other
-        // types can be added as HTTP GET or POST headers as well.
-        if (this.username != null && this.password != null) {
-            addBasicAuthenticationHeader(post, this.username, this.password);
+        // A deferred validation is run by a single request, behind the breaker so that while Solr
+        // is down the failed validations open the circuit and later requests fail fast.
+        if (validated == false && validating.compareAndSet(false, true)) {
+            long validationStart = System.nanoTime();
+            try {
+                validateConnection(deadline);
+            } catch (BridgeError e) {
+                breaker.onFailure((System.nanoTime() - validationStart) / 1000000L);
+                throw e;
+            } finally {
+                validating.set(false);
+            }
         }
 
-        post.setEntity(
-            buildRequestBody(queryMethod, request, solrParser)
-        );
+        // Fail fast instead of piling more requests onto a structure that is already saturated.
+        SolrConcurrencyLimiter limiter = getLimiter(request.getStructure());
+        if (limiter.tryAcquire() == false) {
+            breaker.onIgnored();
+            metrics.increment("limiter." + request.getStructure() + ".rejections");
+            throw new SolrLimitExceededError(
+                String.format(
+                    "The concurrency limit (%d) of the %s structure has been reached, the request was rejected.",
+                    limiter.getLimit(),
+                    request.getStructure()
+                )
+            );
+        }
+        long startTime = System.nanoTime();
+        boolean dropped = true;
+        boolean ignored = false;
 
-        // Make the call to the REST source to retrieve data and convert the response from an
-        // HttpEntity object into a Java string so more response parsing can be done.
+        // Make the call to the REST source to retrieve data. The response body has already been
+        // converted from an HttpEntity object into a Java string so more parsing can be done.
         try {
-            response = client.execute(post);
-            Integer responseStatus = response.getStatusLine().getStatusCode();
-            logger.trace(String.format("Request response code: %s", response.getStatusLine().getStatusCode()));
+            // Count responses are tiny, compressing them only costs CPU on both ends.
+            boolean compress = responseCompression && queryMethod.equals("count") == false;
+            SolrResponse response = executeWithRetries(url, requestBody, compress, decoder, request.getStructure(), deadline);
+            Integer responseStatus = response.getStatus();
+            logger.trace(String.format("Request response code: %s", responseStatus));
 
             if (responseStatus >= 300 || responseStatus < 200) {
-                HttpEntity entity = response.getEntity();
-                String errorMessage = EntityUtils.toString(entity);
+                // Client errors say nothing about the capacity of the Solr server.
+                ignored = responseStatus < 500;
+                // The schema of the structure changed since it was cached, load it again.
+                if (responseStatus == 400 && StringUtils.contains(response.getBody(), "undefined field")) {
+                    schemaCache.invalidate(request.getStructure());
+                }
                 throw new BridgeError(
                     String.format(
                         "The Solr server returned a HTTP status code of %d, 200 was expected. Response body: %s",
                         responseStatus,
-                        errorMessage
+                        response.getBody()
                     )
                 );
             }
 
-            HttpEntity entity = response.getEntity();
-            result = EntityUtils.toString(entity);
+            result = response;
+            dropped = false;
 
         } catch (IOException e) {
             logger.error(e.getMessage());
             throw new BridgeError("Unable to make a connection to the Solr server", e);
+        } finally {
+            long elapsed = System.nanoTime() - startTime;
+            if (ignored) {
+                limiter.onIgnored();
+            } else if (dropped) {
+                limiter.onDropped();
+            } else {
+                limiter.onSuccess(elapsed);
+            }
+            if (dropped && ignored == false) {
+                breaker.onFailure(elapsed / 1000000L);
+            } else {
+                breaker.onSuccess(elapsed / 1000000L);
+            }
+        }
+        if (cacheKey != null) {
+            responseCache.put(cacheKey, result.getDocument());
+        }
+        if (logger.isTraceEnabled()) {
+            Object document = result.getDocument();
+            logger.trace(String.format("Solr response - Raw Output: %s",
+                document instanceof Map || document instanceof List ? JsonPath.parse(document).jsonString() : document));
+        }
+
+        return result;
+    }
+
+    /**
+     * Sends the request, retrying connection failures and 503 responses while enough of the
+     * request's latency budget remains for another attempt to complete.
+     */
+    private SolrResponse executeWithRetries(String url, HttpEntity requestBody, boolean compress, ResponseDecoder decoder,
+        String structure, long deadline
+    ) throws IOException {
+        int attempt = 0;
+        while (true) {
+            SolrResponse result = null;
+            IOException failure = null;
+            try {
+                result = executeHedged(url, requestBody, compress, decoder, structure, deadline);
+            } catch (IOException e) {
+                failure = e;
+            }
+            boolean retryable = failure != null || result.getStatus() == 503;
+            if (retryable == false
+                || attempt++ >= retryAttempts
+                || remainingMillis(deadline) < MIN_RETRY_BUDGET_MILLIS
+                || failure instanceof InterruptedIOException
+            ) {
+                if (failure != null) throw failure;
+                return result;
+            }
+            metrics.increment("retries." + structure);
+            logger.debug("Retrying the request to the {} structure ({} attempt)", structure, attempt + 1);
         }
-        logger.trace(String.format("Solr response - Raw Output: %s", result));
+    }
+
+    /**
+     * Sends the request and, when hedging is enabled and the structure's 95th percentile latency
+     * passes without a response, sends a duplicate request. The first successful response wins
+     * and the other request is aborted.
+     */
+    private SolrResponse executeHedged(String url, HttpEntity requestBody, boolean compress, ResponseDecoder decoder,
+        String structure, long deadline
+    ) throws IOException {
+        SolrLatencyTracker tracker = getLatencyTracker(structure);
+        long hedgeDelay = hedgeRequests ? tracker.getPercentile(HEDGE_PERCENTILE) : -1;
+        if (hedgeDelay < 0 || hedgeDelay >= remainingMillis(deadline)) {
+            return execute(createPost(url, requestBody, compress, deadline), decoder, tracker);
+        }
+
+        CompletionService<SolrResponse> completionService = new ExecutorCompletionService<SolrResponse>(executor);
+        List<HttpPost> posts = new ArrayList<HttpPost>();
+        try {
+            posts.add(createPost(url, requestBody, compress, deadline));
+            completionService.submit(executeTask(posts.get(0), decoder, tracker));
+            Future<SolrResponse> completed = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (completed == null) {
+                metrics.increment("hedges." + structure);
+                posts.add(createPost(url, requestBody, compress, deadline));
+                completionService.submit(executeTask(posts.get(1), decoder, tracker));
+                completed = completionService.take();
+            }
+            try {
+                SolrResponse result = completed.get();
+                if (result.getStatus() < 500 || posts.size() == 1) return result;
+            } catch (ExecutionException e) {
+                if (posts.size() == 1) throw unwrap(e);
+            }
+            // The first response failed, use whatever the other request returns.
+            try {
+                return completionService.take().get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Solr response.");
+        } finally {
+            for (HttpPost post : posts) {
+                post.abort();
+            }
+        }
+    }
 
+    private Callable<SolrResponse> executeTask(final HttpPost post, final ResponseDecoder decoder, final SolrLatencyTracker tracker) {
+        return new Callable<SolrResponse>() {
+            @Override
+            public SolrResponse call() throws IOException {
+                return execute(post, decoder, tracker);
+            }
+        };
+    }
+
+    private SolrResponse execute(HttpPost post, ResponseDecoder decoder, SolrLatencyTracker tracker) throws IOException {
+        long startTime = System.currentTimeMillis();
+        HttpResponse response = client.execute(post);
+        int status = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        SolrResponse result;
+        if (status >= 200 && status < 300) {
+            // Decode the (transparently decompressed) body as a stream instead of buffering it.
+            Charset charset = ContentType.getOrDefault(entity).getCharset();
+            InputStream content = entity.getContent();
+            try {
+                result = SolrResponse.success(status, decoder.decode(content, charset == null ? Consts.UTF_8 : charset));
+            } finally {
+                content.close();
+            }
+        } else {
+            result = SolrResponse.error(status, EntityUtils.toString(entity));
+        }
+        if (result.isSuccessful()) {
+            tracker.record(System.currentTimeMillis() - startTime);
+        }
         return result;
     }
 
-    private void testAuthenticationValues(String restEndpoint, String username, String password) throws BridgeError {
+    private HttpPost createPost(String url, HttpEntity requestBody, boolean compress, long deadline) {
+        HttpPost post = new HttpPost(url);
+        post.setConfig(
+            RequestConfig.copy(createRequestConfig(deadline))
+                // Sends Accept-Encoding: gzip,deflate and decodes the compressed response.
+                .setContentCompressionEnabled(compress)
+                .build()
+        );
+
+        // Append the authentication to the call. This example uses Basic Authentication but other
+        // types can be added as HTTP GET or POST headers as well.
+        if (this.username != null && this.password != null) {
+            addBasicAuthenticationHeader(post, this.username, this.password);
+        }
+        post.setEntity(requestBody);
+        return post;
+    }
+
+    /** Bounds the connection pool wait, the connect and every read by the time left until the deadline. */
+    private static RequestConfig createRequestConfig(long deadline) {
+        int timeout = (int)Math.max(1, remainingMillis(deadline));
+        return RequestConfig.custom()
+            .setConnectionRequestTimeout(timeout)
+            .setConnectTimeout(timeout)
+            .setSocketTimeout(timeout)
+            .build();
+    }
+
+    /**
+     * Identifies a request by its URL and its form encoded body, without the timeAllowed parameter
+     * which follows the remaining latency budget and differs between identical requests.
+     */
+    private static String getCacheKey(String url, HttpEntity requestBody) throws BridgeError {
+        try {
+            return url + "#" + EntityUtils.toString(requestBody).replaceAll("(^|&)timeAllowed=[^&]*", "");
+        } catch (IOException e) {
+            throw new BridgeError("Unable to read the Solr request body.", e);
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof IOException) return (IOException)e.getCause();
+        throw new IllegalStateException(e.getCause());
+    }
+
+    private static long remainingMillis(long deadline) {
+        return (deadline - System.nanoTime()) / 1000000L;
+    }
+
+    /**
+     * Validates the endpoint and credentials with the node level system info handler, which is
+     * cheap to call and available on SolrCloud nodes where the core admin handler is restricted.
+     * The validation is bounded by the remaining time of the deadline.
+     */
+    private void validateConnection(long deadline) throws BridgeError {
+        if (validated) return;
         logger.debug("Testing the authentication credentials");
-        HttpGet get = new HttpGet(String.format("%s/admin/cores?action=STATUS",restEndpoint));
+        HttpGet get = new HttpGet(String.format("%s/admin/info/system?wt=json", this.apiEndpoint));
+        get.setConfig(createRequestConfig(deadline));
 
-        if (username != null && password != null) {
+        if (this.username != null && this.password != null) {
             addBasicAuthenticationHeader(get, this.username, this.password);
         }
 
-        HttpClient client = HttpClients.createDefault();
         HttpResponse response;
         try {
             response = client.execute(get);
@@ -418,7 +1885,120 @@ public class SolrAdapter implements BridgeAdapter {
         }
         catch (IOException e) {
             logger.error(e.getMessage());
-            throw new BridgeError("Unable to make a connection to the Solr core status check API endpoint.", e);
+            throw new BridgeError("Unable to make a connection to the Solr system info API endpoint.", e);
+        }
+        validated = true;
+    }
+
+    /**
+     * Pings each configured warm-up structure so that pooled connections are opened and the
+     * cores are loaded before the first bridge request arrives. Failures are only logged.
+     */
+    private void warmUp() {
+        for (String structure : warmupStructures) {
+            HttpGet get = new HttpGet(String.format("%s/%s/admin/ping?wt=json", this.apiEndpoint, structure));
+            if (this.username != null && this.password != null) {
+                addBasicAuthenticationHeader(get, this.username, this.password);
+            }
+            try {
+                HttpResponse response = client.execute(get);
+                EntityUtils.consume(response.getEntity());
+                logger.debug("Warm-up ping of {} returned {}", structure, response.getStatusLine().getStatusCode());
+                schemaCache.prefetch(structure);
+            } catch (IOException e) {
+                logger.warn(String.format("Unable to warm up the %s structure: %s", structure, e.getMessage()));
+            }
+        }
+    }
+
+    /** Counts the request in the query profile and saves the profile once its interval has passed. */
+    private void recordQuery(String method, BridgeRequest request) {
+        final SolrQueryProfile profile = this.queryProfile;
+        // Delta searches depend on their watermark and are not worth replaying.
+        if (profile == null || PROFILE_SUPPRESSED.get() != null || request.getMetadata("watermark") != null) {
+            return;
+        }
+        profile.record(method, request);
+        if (profile.claimSave()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        profile.save();
+                    } catch (IOException e) {
+                        logger.warn(String.format("Unable to save the query profile: %s", e.getMessage()));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Replays the most frequent queries of the profile, at most warmupQueryRate per second, so the
+     * Solr caches, the connection pool, the schema and field plan caches and the JIT are warm
+     * before real traffic arrives.
+     */
+    private void replayQueryProfile() {
+        if (queryProfile == null || warmupQueryCount == 0) return;
+        PROFILE_SUPPRESSED.set(Boolean.TRUE);
+        try {
+            for (SolrQueryProfile.Query query : queryProfile.getTopQueries(warmupQueryCount)) {
+                long start = System.currentTimeMillis();
+                try {
+                    if (query.getMethod().equals("count")) {
+                        count(query.toRequest());
+                    } else if (query.getMethod().equals("retrieve")) {
+                        retrieve(query.toRequest());
+                    } else {
+                        search(query.toRequest());
+                    }
+                    metrics.increment("warmup.queries");
+                } catch (BridgeError | RuntimeException e) {
+                    logger.debug("Unable to replay a profiled {} query: {}", query.getMethod(), e.getMessage());
+                }
+                Thread.sleep(Math.max(0, 1000L / warmupQueryRate - (System.currentTimeMillis() - start)));
+            }
+        } catch (InterruptedException e) {
+            // The adapter is being reinitialized or shut down.
+            Thread.currentThread().interrupt();
+        } finally {
+            PROFILE_SUPPRESSED.remove();
+        }
+    }
+
+    private void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+        if (this.client != null) {
+            try {
+                this.client.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the Solr HTTP client.", e);
+            }
+            this.client = null;
+        }
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> result = new ArrayList<String>();
+        if (StringUtils.isNotBlank(value)) {
+            for (String item : value.split(",")) {
+                if (StringUtils.isNotBlank(item)) result.add(item.trim());
+            }
+        }
+        return result;
+    }
+
+    /** Creates named daemon threads so background work never blocks the bridge host from exiting. */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "solr-bridge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
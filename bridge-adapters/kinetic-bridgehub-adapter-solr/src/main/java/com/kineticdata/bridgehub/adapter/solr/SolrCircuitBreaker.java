@@ -0,0 +1,124 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+/**
+ * A count based circuit breaker for the requests sent to one Solr endpoint and structure.
+ *
+ * The outcomes of the last {@code windowSize} calls are kept. Once at least {@code minimumCalls}
+ * have been recorded the breaker opens when the share of failed calls or of calls slower than
+ * {@code slowCallMillis} reaches its threshold. An open breaker rejects calls for
+ * {@code openMillis}, then lets {@code halfOpenCalls} probes through: if they all succeed the
+ * breaker closes, any failed or slow probe opens it again.
+ */
+class SolrCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int recorded = 0;
+    private int next = 0;
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private int halfOpenPermits = 0;
+    private int halfOpenSuccesses = 0;
+
+    SolrCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+        int slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenCalls
+    ) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = halfOpenCalls;
+        this.failures = new boolean[windowSize];
+        this.slowCalls = new boolean[windowSize];
+    }
+
+    /** Returns whether a call may be sent, moving an expired open breaker to half open. */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.OPEN) return false;
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) return false;
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /** Records a call that received a response after {@code durationMillis}. */
+    synchronized void onSuccess(long durationMillis) {
+        record(false, durationMillis >= slowCallMillis);
+    }
+
+    /** Records a call that failed to connect, timed out or received a server error. */
+    synchronized void onFailure(long durationMillis) {
+        record(true, durationMillis >= slowCallMillis);
+    }
+
+    /** Returns the permit of an acquired call that was never sent. */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) halfOpenPermits++;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private void record(boolean failure, boolean slow) {
+        if (state == State.HALF_OPEN) {
+            if (failure || slow) {
+                open();
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                state = State.CLOSED;
+                recorded = 0;
+                next = 0;
+            }
+            return;
+        }
+        if (state == State.OPEN) return;
+
+        failures[next] = failure;
+        slowCalls[next] = slow;
+        next = (next + 1) % windowSize;
+        if (recorded < windowSize) recorded++;
+        if (recorded >= minimumCalls) {
+            int failureCount = 0;
+            int slowCount = 0;
+            for (int i = 0; i < recorded; i++) {
+                if (failures[i]) failureCount++;
+                if (slowCalls[i]) slowCount++;
+            }
+            if (failureCount * 100 >= failureRateThreshold * recorded
+                || slowCount * 100 >= slowCallRateThreshold * recorded
+            ) {
+                open();
+            }
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = currentTimeMillis();
+        recorded = 0;
+        next = 0;
+    }
+
+}
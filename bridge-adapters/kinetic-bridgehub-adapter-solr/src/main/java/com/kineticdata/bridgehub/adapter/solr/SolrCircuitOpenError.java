@@ -0,0 +1,17 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeError;
+
+/**
+ * Thrown without contacting Solr while the circuit breaker of a structure is open and no cached
+ * response within the stale tolerance is available.
+ */
+public class SolrCircuitOpenError extends BridgeError {
+
+    private static final long serialVersionUID = 1L;
+
+    public SolrCircuitOpenError(String message) {
+        super(message);
+    }
+
+}
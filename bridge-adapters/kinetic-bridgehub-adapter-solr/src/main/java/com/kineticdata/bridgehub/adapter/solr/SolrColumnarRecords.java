@@ -0,0 +1,290 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A fixed size list of records that stores a result page by column instead of as one map per
+ * document. Numeric and boolean columns are kept in primitive arrays, repeated strings are
+ * dictionary encoded, and a {@link Record} is only materialized, as a view over the columns, when
+ * a caller asks for its row. A row that is changed through its record is copied out of the
+ * columns.
+ */
+class SolrColumnarRecords extends AbstractList<Record> {
+
+    /** String columns with more distinct values than this share of the rows are not encoded. */
+    private static final double DICTIONARY_MAX_RATIO = 0.5;
+
+    /** A column of values for every row of the page. */
+    private interface Column {
+        Object get(int row);
+    }
+
+    private final List<String> fields;
+    private final Map<String, Integer> fieldIndexes;
+    private final Column[] columns;
+    private final int size;
+    /** The rows that were changed through their record, copied out of the columns. */
+    private final Map<Integer, Map<String, Object>> writtenRows = new ConcurrentHashMap<Integer, Map<String, Object>>();
+
+    private SolrColumnarRecords(List<String> fields, Column[] columns, int size) {
+        this.fields = fields;
+        this.columns = columns;
+        this.size = size;
+        this.fieldIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < fields.size(); i++) {
+            fieldIndexes.put(fields.get(i), i);
+        }
+    }
+
+    /** Extracts the fields of the plan from every document into columns. */
+    static SolrColumnarRecords fromDocuments(SolrSchema.FieldPlan plan, List<Object> documents) {
+        List<String> fields = plan.getFields();
+        Column[] columns = new Column[fields.size()];
+        Object[] values = new Object[documents.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            for (int row = 0; row < values.length; row++) {
+                values[row] = plan.extract(documents.get(row), i);
+            }
+            columns[i] = encode(values);
+        }
+        return new SolrColumnarRecords(fields, columns, values.length);
+    }
+
+    @Override
+    public Record get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", row, size));
+        }
+        return new Record(new RowMap(row));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    /** Picks the most compact column type able to hold every value exactly. */
+    private static Column encode(Object[] values) {
+        Class<?> type = null;
+        BitSet nulls = new BitSet(values.length);
+        for (int row = 0; row < values.length; row++) {
+            Object value = values[row];
+            if (value == null) {
+                nulls.set(row);
+            } else if (type == null) {
+                type = value.getClass();
+            } else if (type != value.getClass()) {
+                type = Object.class;
+            }
+        }
+
+        if (type == Integer.class) {
+            final int[] data = new int[values.length];
+            for (int row = 0; row < values.length; row++) {
+                if (values[row] != null) data[row] = (Integer)values[row];
+            }
+            return new NullableColumn(nulls) {
+                @Override
+                Object getValue(int row) { return data[row]; }
+            };
+        } else if (type == Long.class) {
+            final long[] data = new long[values.length];
+            for (int row = 0; row < values.length; row++) {
+                if (values[row] != null) data[row] = (Long)values[row];
+            }
+            return new NullableColumn(nulls) {
+                @Override
+                Object getValue(int row) { return data[row]; }
+            };
+        } else if (type == Double.class) {
+            final double[] data = new double[values.length];
+            for (int row = 0; row < values.length; row++) {
+                if (values[row] != null) data[row] = (Double)values[row];
+            }
+            return new NullableColumn(nulls) {
+                @Override
+                Object getValue(int row) { return data[row]; }
+            };
+        } else if (type == Boolean.class) {
+            final BitSet data = new BitSet(values.length);
+            for (int row = 0; row < values.length; row++) {
+                if (Boolean.TRUE.equals(values[row])) data.set(row);
+            }
+            return new NullableColumn(nulls) {
+                @Override
+                Object getValue(int row) { return data.get(row); }
+            };
+        } else if (type == String.class) {
+            return encodeStrings(values);
+        }
+        final Object[] data = values.clone();
+        return new Column() {
+            @Override
+            public Object get(int row) { return data[row]; }
+        };
+    }
+
+    private static Column encodeStrings(Object[] values) {
+        Map<Object, Integer> codes = new HashMap<Object, Integer>();
+        List<String> dictionary = new ArrayList<String>();
+        final int[] data = new int[values.length];
+        int maxEntries = (int)(values.length * DICTIONARY_MAX_RATIO);
+        for (int row = 0; row < values.length; row++) {
+            if (values[row] == null) {
+                data[row] = -1;
+                continue;
+            }
+            Integer code = codes.get(values[row]);
+            if (code == null) {
+                if (dictionary.size() >= maxEntries) {
+                    // Mostly unique values, the dictionary would only add overhead.
+                    final Object[] plain = values.clone();
+                    return new Column() {
+                        @Override
+                        public Object get(int row) { return plain[row]; }
+                    };
+                }
+                code = dictionary.size();
+                codes.put(values[row], code);
+                dictionary.add((String)values[row]);
+            }
+            data[row] = code;
+        }
+        final String[] entries = dictionary.toArray(new String[dictionary.size()]);
+        return new Column() {
+            @Override
+            public Object get(int row) { return data[row] < 0 ? null : entries[data[row]]; }
+        };
+    }
+
+    /** A primitive column whose null rows are tracked in a bit set. */
+    private static abstract class NullableColumn implements Column {
+        private final BitSet nulls;
+
+        NullableColumn(BitSet nulls) {
+            this.nulls = nulls;
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : getValue(row);
+        }
+
+        abstract Object getValue(int row);
+    }
+
+    /**
+     * The map of a single row, reading every value from its column on access. The first change to
+     * a row copies its values to a map that replaces the columns for that row, so changes behave
+     * like those of a map backed record.
+     */
+    private class RowMap extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowMap(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Map<String, Object> written = getWritten();
+            if (written != null) return written.get(key);
+            Integer index = fieldIndexes.get(key);
+            return index == null ? null : columns[index].get(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Map<String, Object> written = getWritten();
+            return written != null ? written.containsKey(key) : fieldIndexes.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            Map<String, Object> written = getWritten();
+            return written != null ? written.size() : fields.size();
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return write().put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return write().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            write().clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            Map<String, Object> written = getWritten();
+            if (written != null) return written.entrySet();
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < fields.size();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (hasNext() == false) throw new NoSuchElementException();
+                            int index = next++;
+                            return new SimpleImmutableEntry<String, Object>(fields.get(index), columns[index].get(row));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return fields.size();
+                }
+            };
+        }
+
+        private Map<String, Object> getWritten() {
+            return writtenRows.isEmpty() ? null : writtenRows.get(row);
+        }
+
+        /** Returns the copy of the row, copying its values from the columns on the first change. */
+        private Map<String, Object> write() {
+            Map<String, Object> written = getWritten();
+            if (written == null) {
+                Map<String, Object> copy = new LinkedHashMap<String, Object>();
+                for (int i = 0; i < fields.size(); i++) {
+                    copy.put(fields.get(i), columns[i].get(row));
+                }
+                written = writtenRows.putIfAbsent(row, copy);
+                if (written == null) written = copy;
+            }
+            return written;
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+/**
+ * An adaptive concurrency limit for the requests sent to a single Solr structure.
+ *
+ * The limit follows additive increase / multiplicative decrease driven by a latency gradient: the
+ * average latency of the last few requests is compared to the long term average of the structure.
+ * While the short term average stays within {@code tolerance} times the long term one the limit
+ * grows by one per limit-worth of requests; once it exceeds it, because requests start queueing,
+ * the limit shrinks by {@code backoffRatio}. Comparing averages instead of single requests keeps a
+ * steady mix of fast retrieves and slow facet or stream queries from shrinking the limit. A
+ * timeout or a server error always shrinks the limit.
+ */
+class SolrConcurrencyLimiter {
+
+    /** Defines the number of requests the short and the long term latency average follow */
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight = 0;
+    private long rejections = 0;
+    private double shortLatency = 0;
+    private double longLatency = 0;
+    private long samples = 0;
+    /** The requests to complete before latency may shrink the limit again. */
+    private int cooldown = 0;
+
+    SolrConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /** Takes a permit if the number of in-flight requests is below the current limit. */
+    synchronized boolean tryAcquire() {
+        if (inFlight >= getLimit()) {
+            rejections++;
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /** Releases a permit of a request that completed successfully after {@code latencyNanos}. */
+    synchronized void onSuccess(long latencyNanos) {
+        int concurrency = inFlight;
+        inFlight--;
+        sample(latencyNanos);
+        if (cooldown > 0) cooldown--;
+        if (samples >= SHORT_WINDOW && cooldown == 0 && shortLatency > longLatency * tolerance) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            // Give the requests already sent at the previous limit time to complete.
+            cooldown = (int)Math.ceil(limit);
+        } else if (concurrency * 2 >= limit) {
+            // Only grow while the limit is actually being used.
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /** Releases a permit of a request that timed out, failed to connect or overloaded the server. */
+    synchronized void onDropped() {
+        inFlight--;
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    /** Releases a permit of a request whose outcome says nothing about the server's capacity. */
+    synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    synchronized int getLimit() {
+        return (int)limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized long getRejections() {
+        return rejections;
+    }
+
+    private void sample(long latencyNanos) {
+        if (samples++ == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+        } else {
+            shortLatency += (latencyNanos - shortLatency) * 2.0 / (SHORT_WINDOW + 1);
+            longLatency += (latencyNanos - longLatency) * 2.0 / (LONG_WINDOW + 1);
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeError;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the field values of single documents keyed by structure and uniqueKey value, so a
+ * retrieve by uniqueKey can be answered from the documents of an earlier search. Entries expire
+ * after a time to live, the least recently used entries are evicted once the estimated size of
+ * the cache exceeds its memory bound, and when a version check interval is set an entry is only
+ * served while the index version of its structure has not changed.
+ */
+class SolrEntityCache {
+
+    /** Loads the current index version of a structure from Solr. */
+    interface VersionLoader {
+        String load(String structure) throws BridgeError;
+    }
+
+    private static class CachedEntity {
+        private final Map<String, Object> values;
+        private final long storedAt;
+        private final String version;
+        private final long bytes;
+
+        private CachedEntity(Map<String, Object> values, long storedAt, String version, long bytes) {
+            this.values = values;
+            this.storedAt = storedAt;
+            this.version = version;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class StructureVersion {
+        private volatile String version;
+        private volatile long checkedAt = 0;
+        private final AtomicBoolean checking = new AtomicBoolean(false);
+    }
+
+    private final LinkedHashMap<String, CachedEntity> entries = new LinkedHashMap<String, CachedEntity>(16, 0.75f, true);
+    private final Map<String, StructureVersion> versions = new ConcurrentHashMap<String, StructureVersion>();
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final long versionCheckMillis;
+    private final VersionLoader versionLoader;
+    private long bytes = 0;
+
+    /**
+     * @param versionCheckMillis the minimum interval between two index version checks of a
+     * structure, 0 disables the version check
+     */
+    SolrEntityCache(long maxBytes, long ttlMillis, long versionCheckMillis, VersionLoader versionLoader) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.versionCheckMillis = versionCheckMillis;
+        this.versionLoader = versionLoader;
+    }
+
+    /** Adds the values to the cached document, or replaces it if it is expired or outdated. */
+    void put(String structure, Object uniqueKeyValue, Map<String, Object> values) {
+        if (uniqueKeyValue == null) return;
+        String version = getVersion(structure);
+        if (versionCheckMillis > 0 && version == null) return;
+        String key = getKey(structure, uniqueKeyValue);
+        long now = currentTimeMillis();
+
+        synchronized (this) {
+            Map<String, Object> merged = new HashMap<String, Object>();
+            CachedEntity existing = entries.remove(key);
+            if (existing != null) {
+                bytes -= existing.bytes;
+                if (isValid(existing, version, now)) merged.putAll(existing.values);
+            }
+            merged.putAll(values);
+            CachedEntity entity = new CachedEntity(merged, now, version, SolrPageBuffer.estimateBytes(key) + SolrPageBuffer.estimateBytes(merged));
+            if (entity.bytes > maxBytes) return;
+            entries.put(key, entity);
+            bytes += entity.bytes;
+
+            Iterator<CachedEntity> eldest = entries.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the requested fields of the cached document, or null if it is not cached, expired,
+     * outdated or does not hold every requested field.
+     */
+    Map<String, Object> get(String structure, Object uniqueKeyValue, Collection<String> fields) {
+        String version = getVersion(structure);
+        if (versionCheckMillis > 0 && version == null) return null;
+        String key = getKey(structure, uniqueKeyValue);
+        long now = currentTimeMillis();
+
+        synchronized (this) {
+            CachedEntity entity = entries.get(key);
+            if (entity == null) return null;
+            if (isValid(entity, version, now) == false) {
+                entries.remove(key);
+                bytes -= entity.bytes;
+                return null;
+            }
+            if (entity.values.keySet().containsAll(fields) == false) return null;
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            for (String field : fields) {
+                result.put(field, entity.values.get(field));
+            }
+            return result;
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    private boolean isValid(CachedEntity entity, String version, long now) {
+        return now - entity.storedAt <= ttlMillis
+            && (versionCheckMillis <= 0 || version.equals(entity.version));
+    }
+
+    /**
+     * Returns the index version of the structure, checking it again once the check interval has
+     * passed. Other threads keep using the previous version while one thread checks it. Returns
+     * null if the version check is disabled or the version could not be loaded.
+     */
+    private String getVersion(String structure) {
+        if (versionCheckMillis <= 0) return null;
+        StructureVersion structureVersion = versions.get(structure);
+        if (structureVersion == null) {
+            versions.putIfAbsent(structure, new StructureVersion());
+            structureVersion = versions.get(structure);
+        }
+        long now = currentTimeMillis();
+        if (now - structureVersion.checkedAt > versionCheckMillis && structureVersion.checking.compareAndSet(false, true)) {
+            try {
+                structureVersion.version = versionLoader.load(structure);
+            } catch (BridgeError e) {
+                SolrAdapter.logger.debug(String.format(
+                    "Unable to check the index version of the %s structure, its cached documents are not served: %s",
+                    structure, e.getMessage()));
+                structureVersion.version = null;
+            } finally {
+                structureVersion.checkedAt = now;
+                structureVersion.checking.set(false);
+            }
+        }
+        return structureVersion.version;
+    }
+
+    private static String getKey(String structure, Object uniqueKeyValue) {
+        return structure + '\u0000' + uniqueKeyValue;
+    }
+
+}
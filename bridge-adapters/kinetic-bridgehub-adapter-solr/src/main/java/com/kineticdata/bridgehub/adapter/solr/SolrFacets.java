@@ -0,0 +1,112 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the facets section of a JSON Facet API response to records. Every bucket of a terms or
+ * range facet becomes a record with the facet name, the bucket value (val), its count and its
+ * nested stats. A stat facet becomes a record with the facet name and the stat as val.
+ */
+class SolrFacets {
+
+    static final String FACET_FIELD = "facet";
+    static final String VALUE_FIELD = "val";
+    static final String COUNT_FIELD = "count";
+    /** The extra buckets of a range facet, returned when its "other" option is set. */
+    private static final List<String> RANGE_OTHER_BUCKETS = Arrays.asList("before", "after", "between");
+
+    private final List<String> fields;
+    private final List<Record> records;
+
+    private SolrFacets(List<String> fields, List<Record> records) {
+        this.fields = fields;
+        this.records = records;
+    }
+
+    /**
+     * Builds the records of the facets response. When fields is empty every value of the buckets
+     * is returned, otherwise only the requested fields.
+     */
+    static SolrFacets fromResponse(Map<String, Object> facets, List<String> fields) {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        if (facets != null) {
+            for (Map.Entry<String, Object> facet : facets.entrySet()) {
+                // The top level count is the number of matching documents, not a facet.
+                if (COUNT_FIELD.equals(facet.getKey())) continue;
+                addRows(rows, facet.getKey(), facet.getValue());
+            }
+        }
+
+        List<String> resultFields = fields;
+        if (resultFields == null || resultFields.isEmpty()) {
+            Set<String> names = new LinkedHashSet<String>();
+            for (Map<String, Object> row : rows) {
+                names.addAll(row.keySet());
+            }
+            resultFields = new ArrayList<String>(names);
+        }
+        List<Record> records = new ArrayList<Record>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            for (String field : resultFields) {
+                values.put(field, row.get(field));
+            }
+            records.add(new Record(values));
+        }
+        return new SolrFacets(resultFields, records);
+    }
+
+    List<String> getFields() {
+        return fields;
+    }
+
+    List<Record> getRecords() {
+        return records;
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    private static void addRows(List<Map<String, Object>> rows, String name, Object facet) {
+        if (facet instanceof Map) {
+            Map<String, Object> facetMap = (Map<String, Object>)facet;
+            if (facetMap.get("buckets") instanceof List) {
+                for (Object bucket : (List<Object>)facetMap.get("buckets")) {
+                    rows.add(toRow(name, (Map<String, Object>)bucket));
+                }
+                for (String other : RANGE_OTHER_BUCKETS) {
+                    if (facetMap.get(other) instanceof Map) {
+                        Map<String, Object> row = toRow(name, (Map<String, Object>)facetMap.get(other));
+                        row.put(VALUE_FIELD, other);
+                        rows.add(row);
+                    }
+                }
+            } else {
+                // A query facet, its count and stats without a bucket value.
+                rows.add(toRow(name, facetMap));
+            }
+        } else {
+            Map<String, Object> row = new LinkedHashMap<String, Object>();
+            row.put(FACET_FIELD, name);
+            row.put(VALUE_FIELD, facet);
+            rows.add(row);
+        }
+    }
+
+    private static Map<String, Object> toRow(String name, Map<String, Object> bucket) {
+        Map<String, Object> row = new LinkedHashMap<String, Object>();
+        row.put(FACET_FIELD, name);
+        row.put(VALUE_FIELD, bucket.get(VALUE_FIELD));
+        row.putAll(bucket);
+        return row;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent successful requests to a structure so percentiles can be
+ * used to decide when a request is late enough to be hedged.
+ */
+class SolrLatencyTracker {
+
+    /** Percentiles are not reported until this many samples have been recorded. */
+    private static final int MIN_SAMPLES = 20;
+    /** The sorted copy used for percentiles is rebuilt after this many new samples. */
+    private static final int RESORT_INTERVAL = 16;
+
+    private final long[] samples;
+    private long[] sorted = new long[0];
+    private int count = 0;
+    private int next = 0;
+    private int unsorted = 0;
+
+    SolrLatencyTracker(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long latencyMillis) {
+        samples[next] = latencyMillis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+        unsorted++;
+    }
+
+    /** Returns the latency percentile in milliseconds, or -1 if too few samples were recorded. */
+    synchronized long getPercentile(double percentile) {
+        if (count < MIN_SAMPLES) return -1;
+        if (unsorted >= RESORT_INTERVAL || sorted.length != count) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            unsorted = 0;
+        }
+        int index = (int)Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+}
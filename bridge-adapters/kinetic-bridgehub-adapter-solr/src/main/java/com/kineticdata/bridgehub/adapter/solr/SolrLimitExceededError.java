@@ -0,0 +1,17 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeError;
+
+/**
+ * Thrown without contacting Solr when the adaptive concurrency limit of a structure has been
+ * reached, so callers can tell load shedding apart from a failed Solr request.
+ */
+public class SolrLimitExceededError extends BridgeError {
+
+    private static final long serialVersionUID = 1L;
+
+    public SolrLimitExceededError(String message) {
+        super(message);
+    }
+
+}
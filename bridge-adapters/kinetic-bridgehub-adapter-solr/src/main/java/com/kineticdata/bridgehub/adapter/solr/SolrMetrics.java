@@ -0,0 +1,52 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal registry of named counters and gauges describing the adapter's runtime behavior. A
+ * snapshot is available through {@link SolrAdapter#getMetrics()}.
+ */
+class SolrMetrics {
+
+    /** Reads the current value of a gauge. */
+    interface Gauge {
+        long getValue();
+    }
+
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+    void increment(String name) {
+        add(name, 1);
+    }
+
+    void add(String name, long delta) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) counter = created;
+        }
+        counter.addAndGet(delta);
+    }
+
+    void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /** Returns the current value of every counter and gauge, sorted by name. */
+    Map<String, Long> snapshot() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+            result.put(counter.getKey(), counter.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+            result.put(gauge.getKey(), gauge.getValue().getValue());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the records of a result page on the heap until their estimated size exceeds the memory
+ * budget, then moves them, and every record added after them, to a {@link SolrSpilledRecords}
+ * file. A buffer that is closed before it is finished removes its file.
+ */
+class SolrPageBuffer implements Closeable {
+
+    private final List<String> fields;
+    private final long budgetBytes;
+    private final List<Record> records = new ArrayList<Record>();
+    private final SizeEstimate size;
+    private SolrSpilledRecords.Writer writer = null;
+    private long spilledBytes = 0;
+
+    /**
+     * @param budgetBytes the estimated heap the records may take before they are spilled, 0
+     * spills every record
+     */
+    SolrPageBuffer(List<String> fields, long budgetBytes) {
+        this.fields = fields;
+        this.budgetBytes = budgetBytes;
+        this.size = new SizeEstimate(budgetBytes);
+    }
+
+    void add(Map<String, Object> values) throws IOException {
+        if (writer != null) {
+            writer.write(values);
+            return;
+        }
+        records.add(new Record(values));
+        if (size.add(values)) {
+            writer = new SolrSpilledRecords.Writer(fields);
+            for (Record record : records) {
+                writer.write(record.getRecord());
+            }
+            records.clear();
+        }
+    }
+
+    /** Returns the records, read from the spill file when the budget was exceeded. */
+    List<Record> finish() throws IOException {
+        if (writer == null) return records;
+        SolrSpilledRecords spilled = writer.finish();
+        spilledBytes = spilled.getBytes();
+        writer = null;
+        return spilled;
+    }
+
+    boolean isSpilled() {
+        return writer != null || spilledBytes > 0;
+    }
+
+    /** Returns the size of the spill file once the buffer is finished. */
+    long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) writer.close();
+    }
+
+    /** Returns whether the estimated heap retained by the decoded documents exceeds the budget. */
+    static boolean exceedsBudget(List<?> documents, long budgetBytes) {
+        SizeEstimate size = new SizeEstimate(budgetBytes);
+        for (Object document : documents) {
+            if (size.add(document)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Estimates the heap of rows added one at a time. The first rows are estimated one by one and
+     * their average is used for the following rows, which are only estimated one by one again
+     * once the total comes within half of the budget. Pages far below the budget, the common
+     * case, are not walked.
+     */
+    static class SizeEstimate {
+        private static final int SAMPLE_ROWS = 16;
+
+        private final long budgetBytes;
+        private long bytes = 0;
+        private long rows = 0;
+        private long estimatedFrom = SAMPLE_ROWS;
+        private long averageBytes = 0;
+
+        SizeEstimate(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        /** Adds the row and returns whether the estimated total exceeds the budget. */
+        boolean add(Object row) {
+            if (rows < SAMPLE_ROWS || rows >= estimatedFrom) {
+                bytes += estimateBytes(row);
+            } else {
+                bytes += averageBytes;
+            }
+            if (++rows == SAMPLE_ROWS) {
+                averageBytes = Math.max(1, bytes / rows);
+                estimatedFrom = rows + Math.max(0, (budgetBytes / 2 - bytes) / averageBytes);
+            }
+            return bytes > budgetBytes;
+        }
+    }
+
+    /** Roughly estimates the heap retained by a decoded JSON value. */
+    static long estimateBytes(Object value) {
+        if (value instanceof String) {
+            return 40 + 2L * ((String)value).length();
+        } else if (value instanceof Map) {
+            long result = 64;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+                result += 32 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return result;
+        } else if (value instanceof Collection) {
+            long result = 40;
+            for (Object item : (Collection<?>)value) {
+                result += 8 + estimateBytes(item);
+            }
+            return result;
+        }
+        // Boxed numbers and booleans, or a null reference.
+        return value == null ? 0 : 24;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.kineticdata.bridgehub.adapter.solr;
 
 import com.kineticdata.bridgehub.adapter.BridgeError;
 import com.kineticdata.bridgehub.adapter.QualificationParser;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -15,6 +16,7 @@ import org.json.simple.parser.ParseException;
 public class SolrQualificationParser extends QualificationParser {
     
     public static String METADATA_FIELD_CONCATE_OPERATOR = "concatenatingOperator";
+    public static String METADATA_FIELD_FACETS = "facets";
     public static String METADATA_FIELD_QUERY_PREFIX = "queryPrefix";
     public static String METADATA_FIELD_QUERY_STYLE = "type";
     public static String METADATA_FIELD_WHITELISTED_FIELDS = "whitelistedFields";
@@ -23,8 +25,22 @@ public class SolrQualificationParser extends QualificationParser {
     public static String QUERY_PATTERN_JSON = "^\\s*\\{.*?\\}\\s*$";
     public static String QUERY_STYLE_KINETIC = "Kinetic DSL";
     public static String QUERY_STYLE_SOLR = "Solr DSL";
+    public static String QUERY_STYLE_STREAM = "Streaming Expression";
+    /** The read only stream sources and decorators a streaming expression may use. */
+    public static List<String> STREAM_FUNCTIONS = Arrays.asList(
+        "search", "innerJoin", "leftOuterJoin", "hashJoin", "merge", "rollup", "top", "unique",
+        "sort", "select", "reduce", "group", "count", "sum", "avg", "min", "max");
+    private static final Pattern STREAM_QUOTED_PATTERN = Pattern.compile("\"(?:\\\\.|[^\"\\\\])*\"");
+    private static final Pattern STREAM_FUNCTION_PATTERN = Pattern.compile("([A-Za-z][\\w.]*)\\s*\\(");
+    public static String REWRITE_REVERSED = "reversed";
+    public static String REWRITE_NGRAM = "ngram";
+    /** Matches an unescaped wildcard that starts a term, but not *:*, field:* or range bounds. */
+    private static final Pattern LEADING_WILDCARD_PATTERN =
+        Pattern.compile("(?<![\\\\\\w\"*?])[*?](?=[^\\s*:)\\]}])");
     
     private Map<String, Object> queryMetadata = null;
+    private Map<String, Map<String, String>> wildcardRewrites = null;
+    private SolrSchema schema = null;
     
     @Override
     public String encodeParameter(String name, String value) {
@@ -69,12 +85,14 @@ public class SolrQualificationParser extends QualificationParser {
                 );
             } else if (StringUtils.equalsIgnoreCase(queryType, QUERY_STYLE_SOLR)) {
                 parsedQuery = parseDslSolr(true, jsonQuery, parameters);
+            } else if (StringUtils.equalsIgnoreCase(queryType, QUERY_STYLE_STREAM)) {
+                parsedQuery = parseStreamingExpression(jsonQuery, parameters);
             } else {
                 throw new BridgeError(
                     String.format(
                         "The specified query type \"%s\" is not valid. Valid options are: %s",
                             queryType,
-                            Arrays.asList(QUERY_STYLE_KINETIC, QUERY_STYLE_SOLR)
+                            Arrays.asList(QUERY_STYLE_KINETIC, QUERY_STYLE_SOLR, QUERY_STYLE_STREAM)
                     )
                 );
             }
@@ -92,6 +110,60 @@ public class SolrQualificationParser extends QualificationParser {
      * PRIVATE HELPER METHODS
      *--------------------------------------------------------------------------------------------*/
     
+    /**
+     * Sets the companion fields Kinetic DSL endsWith and like matchers are rewritten to, keyed by
+     * field name. The "reversed" companion must index the reversed field value (for example with
+     * solr.ReverseStringFilterFactory) and is queried with the reversed value as a prefix. The
+     * "ngram" companion must index the n-grams of the field value and is queried with a plain term.
+     */
+    public void setWildcardRewrites(Map<String, Map<String, String>> wildcardRewrites) {
+        this.wildcardRewrites = wildcardRewrites;
+    }
+
+    /**
+     * Sets the schema of the structure, which provides the gram sizes of the "ngram" companion
+     * fields. Without a schema every like matcher is rewritten.
+     */
+    void setSchema(SolrSchema schema) {
+        this.schema = schema;
+    }
+
+    /** Returns whether the lucene query contains a term starting with a wildcard. */
+    public static boolean hasLeadingWildcard(String luceneQuery) {
+        return luceneQuery != null && LEADING_WILDCARD_PATTERN.matcher(luceneQuery).find();
+    }
+
+    /**
+     * Returns the JSON Facet API request declared by the facets key of the bridge query metadata,
+     * with its parameters JSON escaped, or null if the query does not declare facets. The facets
+     * may be given as a JSON object or as a string holding one.
+     */
+    public String getFacets(String query, Map<String, String> parameters) throws BridgeError {
+
+        String facets = null;
+        this.parseMetadataJson(query);
+        if (this.queryMetadata != null) {
+            Object metadataFacets = queryMetadata.get(METADATA_FIELD_FACETS);
+            if (metadataFacets instanceof Map) {
+                facets = JSONValue.toJSONString(metadataFacets);
+            } else if (metadataFacets instanceof String && StringUtils.isNotBlank((String)metadataFacets)) {
+                facets = (String)metadataFacets;
+            }
+        }
+        if (facets != null) {
+            facets = parseDslSolr(true, facets.replaceAll(PARAMETER_PATTERN_GROUP_MATCH, "<%= parameter['$1'] %>"), parameters);
+        }
+        return facets;
+
+    }
+
+    /** Returns whether the bridge query is a streaming expression for the /stream handler. */
+    public boolean isStreamingExpression(String query) throws BridgeError {
+        this.parseMetadataJson(query);
+        return this.queryMetadata != null
+            && StringUtils.equalsIgnoreCase((String)queryMetadata.get(METADATA_FIELD_QUERY_STYLE), QUERY_STYLE_STREAM);
+    }
+
     public String getJsonRootPath(String query) throws BridgeError {
         
         String jsonRootPath = null;
@@ -161,37 +233,42 @@ public class SolrQualificationParser extends QualificationParser {
                 if (isPhraseMatch == null) isPhraseMatch = false;
                 Object fieldValue = (Object)fieldProperties.get("value");
                 
+                // Leading wildcards are sent to a companion field when the structure defines one.
+                String rewriteField = isPhraseMatch ? null : getRewriteField(fieldName, matchType);
+                // The companion has no gram as short or as long as the value, it would match nothing.
+                if (rewriteField != null && matchType.equals("like") && isWithinGramSizes(rewriteField, fieldValue) == false) {
+                    rewriteField = null;
+                }
+                String queryField = rewriteField == null ? fieldName : rewriteField;
+                boolean leadingWildcard = rewriteField == null
+                    && (matchType.equals("endsWith") || matchType.equals("like"));
+                boolean trailingWildcard = matchType.equals("startsWith")
+                    || (rewriteField == null && matchType.equals("like"))
+                    || (rewriteField != null && matchType.equals("endsWith"));
+
                 if (fieldValue != null) {
                     if (fieldValue instanceof String) {
                         String valueStr = (String)(fieldValue);
-                        query.append(fieldName)
+                        query.append(queryField)
                             .append(":");
                         // Wrap the field matching in quotes if this is a phrase match
                         if (isPhraseMatch) query.append("\"");
-                        if (matchType.equals("endsWith") || matchType.equals("like")) {
-                            query.append("*");
-                        }
-                        query.append(encodeParameter(fieldName, valueStr));
-                        if (matchType.equals("startsWith") || matchType.equals("like")) {
-                            query.append("*");
-                        }
+                        if (leadingWildcard) query.append("*");
+                        query.append(encodeParameter(fieldName, rewriteValue(valueStr, matchType, rewriteField)));
+                        if (trailingWildcard) query.append("*");
                         // Wrap the field matching in quotes if this is a phrase match
                         if (isPhraseMatch) query.append("\"");
                     } else if (fieldValue instanceof List) {
                         List<String> valueList = (List<String>)(fieldValue);
-                        query.append(fieldName)
+                        query.append(queryField)
                             .append(":(");
                         for (String value : valueList) {
                             // Wrap the field matching in quotes if this is a phrase match
                             if (requireAllValues) query.append("+");
                             if (isPhraseMatch) query.append("\"");
-                            if (matchType.equals("endsWith") || matchType.equals("like")) {
-                                query.append("*");
-                            }
-                            query.append(encodeParameter(fieldName, value));
-                            if (matchType.equals("startsWith") || matchType.equals("like")) {
-                                query.append("*");
-                            }
+                            if (leadingWildcard) query.append("*");
+                            query.append(encodeParameter(fieldName, rewriteValue(value, matchType, rewriteField)));
+                            if (trailingWildcard) query.append("*");
                             // Wrap the field matching in quotes if this is a phrase match
                             if (isPhraseMatch) query.append("\"");
                             query.append(" ");
@@ -229,6 +306,88 @@ public class SolrQualificationParser extends QualificationParser {
         return query.toString();
     }
 
+    private String getRewriteField(String fieldName, String matchType) {
+        Map<String, String> companions = wildcardRewrites == null ? null : wildcardRewrites.get(fieldName);
+        if (companions == null) return null;
+        if (matchType.equals("endsWith")) return companions.get(REWRITE_REVERSED);
+        if (matchType.equals("like")) return companions.get(REWRITE_NGRAM);
+        return null;
+    }
+
+    /** Returns whether every value has a length the n-gram companion field indexes grams of. */
+    private boolean isWithinGramSizes(String rewriteField, Object fieldValue) {
+        SolrSchema.Field field = schema == null ? null : schema.getField(rewriteField);
+        if (field == null || field.getMaxGramSize() == 0) return true;
+        List<Object> values = fieldValue instanceof List ? (List<Object>)fieldValue : Arrays.asList(fieldValue);
+        for (Object value : values) {
+            if (value instanceof String) {
+                int length = ((String)value).codePointCount(0, ((String)value).length());
+                if (length < field.getMinGramSize() || length > field.getMaxGramSize()) return false;
+            }
+        }
+        return true;
+    }
+
+    private String rewriteValue(String value, String matchType, String rewriteField) {
+        if (rewriteField != null && matchType.equals("endsWith")) {
+            return new StringBuilder(value).reverse().toString();
+        }
+        return value;
+    }
+
+    /**
+     * Makes sure the streaming expression only calls read only stream functions, then binds its
+     * parameters. The functions are checked before the parameters are bound, and a bound value can
+     * not add a function call or an argument: inside a quoted argument it is lucene encoded like the
+     * Solr DSL, anywhere else it becomes a quoted string literal.
+     */
+    private String parseStreamingExpression(String expression, Map<String, String> parameters) throws BridgeError {
+        if (StringUtils.isBlank(expression)) {
+            throw new BridgeError("The streaming expression was not specified or was blank. The 'query' key is required.");
+        }
+
+        // Quoted values, such as search queries, are not function calls.
+        Matcher matcher = STREAM_FUNCTION_PATTERN.matcher(STREAM_QUOTED_PATTERN.matcher(expression).replaceAll("\"\""));
+        while (matcher.find()) {
+            if (STREAM_FUNCTIONS.contains(matcher.group(1)) == false) {
+                throw new BridgeError(
+                    String.format(
+                        "The streaming expression function \"%s\" is not allowed. Allowed functions are: %s",
+                        matcher.group(1),
+                        STREAM_FUNCTIONS
+                    )
+                );
+            }
+        }
+
+        List<int[]> quotedRanges = new ArrayList<int[]>();
+        Matcher quotedMatcher = STREAM_QUOTED_PATTERN.matcher(expression);
+        while (quotedMatcher.find()) {
+            quotedRanges.add(new int[] {quotedMatcher.start(), quotedMatcher.end()});
+        }
+        StringBuffer resultBuffer = new StringBuffer();
+        Matcher parameterMatcher = Pattern.compile(PARAMETER_PATTERN_JSON_SAFE).matcher(expression);
+        while (parameterMatcher.find()) {
+            String parameterName = parameterMatcher.group(1);
+            String parameterValue = parameters == null ? null : parameters.get(parameterName);
+            if (parameterValue == null) {
+                throw new BridgeError("Unable to parse qualification, "+
+                    "the '"+parameterName+"' parameter was referenced but "+
+                    "not provided.");
+            }
+            boolean quoted = false;
+            for (int[] range : quotedRanges) {
+                if (parameterMatcher.start() > range[0] && parameterMatcher.end() < range[1]) quoted = true;
+            }
+            String value = quoted
+                ? StringUtils.defaultString(encodeParameter(parameterName, parameterValue))
+                : "\"" + parameterValue.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            parameterMatcher.appendReplacement(resultBuffer, Matcher.quoteReplacement(value));
+        }
+        parameterMatcher.appendTail(resultBuffer);
+        return resultBuffer.toString();
+    }
+
     private String parseDslSolr(boolean isJsonQuery, String solrQuery, Map<String, String> parameters) throws BridgeError {
         
         StringBuffer resultBuffer = new StringBuffer();
@@ -0,0 +1,201 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeRequest;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+/**
+ * A rolling profile of the most frequent bridge queries, kept in a local JSON file so the queries
+ * can be replayed after a restart. A query is identified by its method, structure, qualification
+ * template, fields and pagination, and keeps the parameters it was last run with. Every save halves
+ * the counts so queries that are no longer run drop out of the profile.
+ */
+class SolrQueryProfile {
+
+    /** The metadata that is part of a profiled query. */
+    private static final List<String> PROFILED_METADATA = Arrays.asList("order", "pageSize", "offset");
+
+    static class Query {
+        private final String method;
+        private final String structure;
+        private final String query;
+        private final List<String> fields;
+        private final Map<String, String> metadata;
+        private volatile Map<String, String> parameters;
+        private final AtomicLong count;
+
+        private Query(String method, String structure, String query, List<String> fields,
+            Map<String, String> metadata, Map<String, String> parameters, long count
+        ) {
+            this.method = method;
+            this.structure = structure;
+            this.query = query;
+            this.fields = fields;
+            this.metadata = metadata;
+            this.parameters = parameters;
+            this.count = new AtomicLong(count);
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        /** Builds a bridge request of the query with its representative parameters. */
+        BridgeRequest toRequest() {
+            BridgeRequest request = new BridgeRequest();
+            request.setStructure(structure);
+            request.setQuery(query);
+            request.setFields(new ArrayList<String>(fields));
+            request.setMetadata(new HashMap<String, String>(metadata));
+            request.setParameters(new HashMap<String, String>(parameters));
+            return request;
+        }
+
+        private Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<String, Object>();
+            json.put("method", method);
+            json.put("structure", structure);
+            json.put("query", query);
+            json.put("fields", fields);
+            json.put("metadata", metadata);
+            json.put("parameters", parameters);
+            json.put("count", count.get());
+            return json;
+        }
+    }
+
+    private final File file;
+    private final int maxQueries;
+    private final long saveIntervalMillis;
+    private final ConcurrentHashMap<String, Query> queries = new ConcurrentHashMap<String, Query>();
+    private final AtomicBoolean saving = new AtomicBoolean(false);
+    private volatile long savedAt = System.currentTimeMillis();
+
+    SolrQueryProfile(File file, int maxQueries, long saveIntervalMillis) {
+        this.file = file;
+        this.maxQueries = maxQueries;
+        this.saveIntervalMillis = saveIntervalMillis;
+    }
+
+    /** Counts a run of the query. Queries that are new while the profile is full are skipped. */
+    void record(String method, BridgeRequest request) {
+        List<String> fields = request.getFields() == null ? Collections.<String>emptyList() : request.getFields();
+        Map<String, String> metadata = new HashMap<String, String>();
+        for (String name : PROFILED_METADATA) {
+            if (request.getMetadata(name) != null) metadata.put(name, request.getMetadata(name));
+        }
+        Map<String, String> parameters = request.getParameters() == null
+            ? Collections.<String, String>emptyMap()
+            : request.getParameters();
+
+        String key = getKey(method, request.getStructure(), request.getQuery(), fields, metadata);
+        Query query = queries.get(key);
+        if (query == null) {
+            if (queries.size() >= maxQueries) return;
+            query = new Query(method, request.getStructure(), request.getQuery(), new ArrayList<String>(fields),
+                metadata, new HashMap<String, String>(parameters), 0);
+            Query existing = queries.putIfAbsent(key, query);
+            if (existing != null) query = existing;
+        } else {
+            query.parameters = new HashMap<String, String>(parameters);
+        }
+        query.count.incrementAndGet();
+    }
+
+    /** Returns the most frequent queries first. */
+    List<Query> getTopQueries(int limit) {
+        List<Query> result = new ArrayList<Query>(queries.values());
+        Collections.sort(result, new Comparator<Query>() {
+            @Override
+            public int compare(Query a, Query b) {
+                return Long.compare(b.getCount(), a.getCount());
+            }
+        });
+        return result.subList(0, Math.min(limit, result.size()));
+    }
+
+    /** Returns true, once per save interval, to the caller that should save the profile. */
+    boolean claimSave() {
+        return System.currentTimeMillis() - savedAt > saveIntervalMillis && saving.compareAndSet(false, true);
+    }
+
+    /** Writes the profile to its file, then halves the counts and forgets unused queries. */
+    void save() throws IOException {
+        try {
+            List<Map<String, Object>> json = new ArrayList<Map<String, Object>>();
+            for (Query query : getTopQueries(maxQueries)) {
+                json.add(query.toJson());
+            }
+            // Write a temporary file first so a crash never leaves a truncated profile behind.
+            File parent = file.getAbsoluteFile().getParentFile();
+            File temporary = File.createTempFile(file.getName(), ".tmp", parent);
+            try (Writer writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+                JSONValue.writeJSONString(json, writer);
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            for (Map.Entry<String, Query> entry : queries.entrySet()) {
+                AtomicLong count = entry.getValue().count;
+                if (count.addAndGet(-(count.get() + 1) / 2) <= 0) queries.remove(entry.getKey());
+            }
+        } finally {
+            savedAt = System.currentTimeMillis();
+            saving.set(false);
+        }
+    }
+
+    /** Reads the profile saved by a previous run, if there is one. */
+    void load() throws IOException {
+        if (file.isFile() == false) return;
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Object item : (List<Object>)JSONValue.parseWithException(reader)) {
+                if (queries.size() >= maxQueries) break;
+                Map<String, Object> entry = (Map<String, Object>)item;
+                Query query = new Query(
+                    (String)entry.get("method"),
+                    (String)entry.get("structure"),
+                    (String)entry.get("query"),
+                    new ArrayList<String>((List<String>)entry.get("fields")),
+                    new HashMap<String, String>((Map<String, String>)entry.get("metadata")),
+                    new HashMap<String, String>((Map<String, String>)entry.get("parameters")),
+                    ((Number)entry.get("count")).longValue()
+                );
+                queries.put(getKey(query.method, query.structure, query.query, query.fields, query.metadata), query);
+            }
+        } catch (ParseException | RuntimeException e) {
+            throw new IOException(String.format("The query profile %s is not a valid profile.", file), e);
+        }
+    }
+
+    int size() {
+        return queries.size();
+    }
+
+    private static String getKey(String method, String structure, String query, List<String> fields, Map<String, String> metadata) {
+        return method + '\n' + structure + '\n' + query + '\n' + fields + '\n' + new TreeMap<String, String>(metadata);
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the already sorted result pages of several structures into one page with a k-way merge,
+ * then applies the global offset and page size.
+ */
+class SolrRecordMerger {
+
+    /** The position of the next record of one structure's page. */
+    private static class Cursor {
+        private final int shard;
+        private final List<Record> records;
+        private int position = 0;
+
+        private Cursor(int shard, List<Record> records) {
+            this.shard = shard;
+            this.records = records;
+        }
+
+        private Record current() {
+            return records.get(position);
+        }
+    }
+
+    private final Comparator<Record> comparator;
+
+    /**
+     * @param order the sort order as returned by BridgeUtils.parseOrder, field name to ASC or DESC;
+     * records of different structures that compare equal keep the structure order
+     */
+    SolrRecordMerger(final Map<String, String> order) {
+        this.comparator = new Comparator<Record>() {
+            @Override
+            public int compare(Record a, Record b) {
+                for (Map.Entry<String, String> entry : order.entrySet()) {
+                    Object valueA = a.getValue(entry.getKey());
+                    Object valueB = b.getValue(entry.getKey());
+                    // Missing values sort last in either direction, like Solr's sortMissingLast.
+                    if (valueA == null || valueB == null) {
+                        if (valueA != valueB) return valueA == null ? 1 : -1;
+                        continue;
+                    }
+                    int result = compareValues(valueA, valueB);
+                    if (result != 0) {
+                        return "DESC".equals(entry.getValue()) ? -result : result;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    List<Record> merge(List<List<Record>> pages, int offset, int pageSize) {
+        PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(Math.max(1, pages.size()), new Comparator<Cursor>() {
+            @Override
+            public int compare(Cursor a, Cursor b) {
+                int result = comparator.compare(a.current(), b.current());
+                return result != 0 ? result : a.shard - b.shard;
+            }
+        });
+        for (int i = 0; i < pages.size(); i++) {
+            if (pages.get(i).isEmpty() == false) queue.add(new Cursor(i, pages.get(i)));
+        }
+
+        List<Record> result = new ArrayList<Record>();
+        int skipped = 0;
+        while (queue.isEmpty() == false && result.size() < pageSize) {
+            Cursor cursor = queue.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(cursor.current());
+            }
+            if (++cursor.position < cursor.records.size()) queue.add(cursor);
+        }
+        return result;
+    }
+
+    /**
+     * Compares two non null field values, numbers by value and other values naturally. Integers
+     * are compared as longs, a double can't tell apart longs above 2^53 such as _version_ values.
+     */
+    private static int compareValues(Object a, Object b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(((Number)a).longValue(), ((Number)b).longValue());
+        }
+        if ((a instanceof BigInteger || a instanceof BigDecimal) && b instanceof Number
+            || (b instanceof BigInteger || b instanceof BigDecimal) && a instanceof Number
+        ) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number)a).doubleValue(), ((Number)b).doubleValue());
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable<Object>)a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+/**
+ * The status code and content of a Solr HTTP response, along with whether it was served from the
+ * response cache instead of Solr. Successful responses are decoded straight from the HTTP stream
+ * into a JSON document, the raw body is only kept for error responses.
+ */
+class SolrResponse {
+
+    private final int status;
+    private final Object document;
+    private final String body;
+    private final boolean stale;
+    private final long ageMillis;
+
+    private SolrResponse(int status, Object document, String body, boolean stale, long ageMillis) {
+        this.status = status;
+        this.document = document;
+        this.body = body;
+        this.stale = stale;
+        this.ageMillis = ageMillis;
+    }
+
+    static SolrResponse success(int status, Object document) {
+        return new SolrResponse(status, document, null, false, 0);
+    }
+
+    static SolrResponse error(int status, String body) {
+        return new SolrResponse(status, null, body, false, 0);
+    }
+
+    static SolrResponse stale(Object document, long ageMillis) {
+        return new SolrResponse(200, document, null, true, ageMillis);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    /** Returns the decoded JSON document of a successful response. */
+    Object getDocument() {
+        return document;
+    }
+
+    /** Returns the raw body of an error response. */
+    String getBody() {
+        return body;
+    }
+
+    boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    /** Whether the response was served from the cache because Solr was not available. */
+    boolean isStale() {
+        return stale;
+    }
+
+    long getAgeMillis() {
+        return ageMillis;
+    }
+
+}
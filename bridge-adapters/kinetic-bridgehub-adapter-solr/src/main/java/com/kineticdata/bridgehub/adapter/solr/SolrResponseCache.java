@@ -0,0 +1,78 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the most recent successful response of each distinct Solr request, bounded to
+ * {@code maxEntries} and to an estimated {@code maxBytes} of heap with least recently used
+ * eviction, so reads can still be answered with a stale response while the circuit breaker of
+ * their structure is open. Responses estimated above {@code maxEntryBytes}, like the large pages
+ * that are spilled to disk, are not cached.
+ */
+class SolrResponseCache {
+
+    private static class CachedResponse {
+        private final Object document;
+        private final long storedAt;
+        private final long bytes;
+
+        private CachedResponse(Object document, long storedAt, long bytes) {
+            this.document = document;
+            this.storedAt = storedAt;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true);
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private long bytes = 0;
+
+    SolrResponseCache(int maxEntries, long maxBytes, long maxEntryBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    void put(String key, Object document) {
+        // Estimated outside of the lock, the document is not shared yet.
+        long documentBytes = SolrPageBuffer.estimateBytes(key) + SolrPageBuffer.estimateBytes(document);
+        synchronized (this) {
+            CachedResponse previous = entries.remove(key);
+            if (previous != null) bytes -= previous.bytes;
+            if (documentBytes > maxEntryBytes) return;
+            entries.put(key, new CachedResponse(document, System.currentTimeMillis(), documentBytes));
+            bytes += documentBytes;
+
+            Iterator<CachedResponse> eldest = entries.values().iterator();
+            while ((bytes > maxBytes || entries.size() > maxEntries) && eldest.hasNext()) {
+                bytes -= eldest.next().bytes;
+                eldest.remove();
+            }
+        }
+    }
+
+    /** Returns the cached response if it is not older than {@code maxAgeMillis}, otherwise null. */
+    synchronized SolrResponse get(String key, long maxAgeMillis) {
+        CachedResponse entry = entries.get(key);
+        if (entry == null) return null;
+        long age = System.currentTimeMillis() - entry.storedAt;
+        if (age > maxAgeMillis) {
+            entries.remove(key);
+            bytes -= entry.bytes;
+            return null;
+        }
+        return SolrResponse.stale(entry.document, age);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+}
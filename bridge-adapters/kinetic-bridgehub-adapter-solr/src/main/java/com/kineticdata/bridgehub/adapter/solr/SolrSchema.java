@@ -0,0 +1,350 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Field metadata of a single Solr structure as returned by the Schema API (/schema), along with
+ * the compiled field plans of the bridge queries that have been run against it.
+ */
+class SolrSchema {
+
+    /** Upper bound of compiled field plans kept per structure. */
+    private static final int MAX_PLANS = 256;
+    /** The gram sizes Solr n-gram factories use when the analyzer does not set them. */
+    private static final int NGRAM_DEFAULT_MIN_SIZE = 1;
+    private static final int NGRAM_DEFAULT_MAX_SIZE = 2;
+    /** Matches a lucene term query against a single field: field:value or field:"value". */
+    private static final String TERM_QUERY_PATTERN =
+        "^\\s*%s\\s*:\\s*(?:\"((?:\\\\.|[^\"\\\\])*)\"|((?:\\\\.|[^\\s\"*?\\\\()\\[\\]{}:^~])+))\\s*$";
+
+    /** Defines how a requested bridge field is read from a Solr document. */
+    enum FieldKind {
+        /** A single valued schema field, read directly from the document map. */
+        SCALAR,
+        /** A multivalued schema field, read directly from the document map as a list. */
+        MULTI,
+        /** A JsonPath expression evaluated against the document. */
+        PATH,
+        /**
+         * A field the cached schema does not define. It is still requested from Solr and read from
+         * the document map, the field may have been added since the schema was cached.
+         */
+        UNRESOLVED,
+        /** An invalid field path, which is always null. */
+        ABSENT
+    }
+
+    static class Field {
+        private final String name;
+        private final String type;
+        private final boolean multiValued;
+        private final boolean docValues;
+        private final int minGramSize;
+        private final int maxGramSize;
+
+        Field(String name, String type, boolean multiValued, boolean docValues) {
+            this(name, type, multiValued, docValues, 0, 0);
+        }
+
+        Field(String name, String type, boolean multiValued, boolean docValues, int minGramSize, int maxGramSize) {
+            this.name = name;
+            this.type = type;
+            this.multiValued = multiValued;
+            this.docValues = docValues;
+            this.minGramSize = minGramSize;
+            this.maxGramSize = maxGramSize;
+        }
+
+        String getName() { return name; }
+        String getType() { return type; }
+        boolean isMultiValued() { return multiValued; }
+        boolean hasDocValues() { return docValues; }
+        /** Returns the shortest n-gram the field type indexes, or 0 if it does not index n-grams. */
+        int getMinGramSize() { return minGramSize; }
+        /** Returns the longest n-gram the field type indexes, or 0 if it does not index n-grams. */
+        int getMaxGramSize() { return maxGramSize; }
+    }
+
+    private final String structure;
+    private final String uniqueKey;
+    private final Map<String, Field> fields;
+    private final List<Field> dynamicFields;
+    private final Pattern uniqueKeyTermPattern;
+    private final Map<List<String>, FieldPlan> plans = new ConcurrentHashMap<List<String>, FieldPlan>();
+    private volatile long numDocs = -1;
+
+    SolrSchema(String structure, String uniqueKey, Map<String, Field> fields, List<Field> dynamicFields) {
+        this.structure = structure;
+        this.uniqueKey = uniqueKey;
+        this.fields = fields;
+        // Solr matches the longest dynamic field pattern first.
+        List<Field> sortedDynamicFields = new ArrayList<Field>(dynamicFields);
+        Collections.sort(sortedDynamicFields, new Comparator<Field>() {
+            @Override
+            public int compare(Field a, Field b) {
+                return b.getName().length() - a.getName().length();
+            }
+        });
+        this.dynamicFields = sortedDynamicFields;
+        this.uniqueKeyTermPattern = uniqueKey == null
+            ? null
+            : Pattern.compile(String.format(TERM_QUERY_PATTERN, Pattern.quote(uniqueKey)));
+    }
+
+    /**
+     * Builds the schema from the parsed body of a /schema?wt=json response. Field attributes that
+     * are not set on the field itself are inherited from its field type.
+     */
+    static SolrSchema fromResponse(String structure, Map<String, Object> response) {
+        Map<String, Object> schema = (Map<String, Object>)response.get("schema");
+        if (schema == null) schema = Collections.emptyMap();
+
+        Map<String, Map<String, Object>> fieldTypes = new HashMap<String, Map<String, Object>>();
+        for (Map<String, Object> fieldType : asList(schema.get("fieldTypes"))) {
+            fieldTypes.put((String)fieldType.get("name"), fieldType);
+        }
+
+        Map<String, Field> fields = new HashMap<String, Field>();
+        for (Map<String, Object> field : asList(schema.get("fields"))) {
+            Field parsed = toField(field, fieldTypes);
+            fields.put(parsed.getName(), parsed);
+        }
+        List<Field> dynamicFields = new ArrayList<Field>();
+        for (Map<String, Object> field : asList(schema.get("dynamicFields"))) {
+            dynamicFields.add(toField(field, fieldTypes));
+        }
+
+        return new SolrSchema(structure, (String)schema.get("uniqueKey"), fields, dynamicFields);
+    }
+
+    String getStructure() {
+        return structure;
+    }
+
+    String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    /** Returns the number of documents in the structure when the schema was loaded, or -1 if unknown. */
+    long getNumDocs() {
+        return numDocs;
+    }
+
+    void setNumDocs(long numDocs) {
+        this.numDocs = numDocs;
+    }
+
+    /** Returns the explicit or dynamic field definition for the name, or null if there is none. */
+    Field getField(String name) {
+        Field field = fields.get(name);
+        if (field == null) {
+            for (Field dynamicField : dynamicFields) {
+                String pattern = dynamicField.getName();
+                if (pattern.startsWith("*") && name.endsWith(pattern.substring(1))
+                    || pattern.endsWith("*") && name.startsWith(pattern.substring(0, pattern.length() - 1))
+                ) {
+                    field = dynamicField;
+                    break;
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Returns the uniqueKey value when the lucene query is nothing more than a term match against
+     * the uniqueKey field, which makes the lookup eligible for real-time get. Returns null otherwise.
+     */
+    String getUniqueKeyValue(String query) {
+        if (uniqueKeyTermPattern == null || query == null) return null;
+        Matcher matcher = uniqueKeyTermPattern.matcher(query);
+        if (matcher.matches() == false) return null;
+        String value = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        // Remove the lucene escaping added by the qualification parser.
+        return value.replaceAll("\\\\(.)", "$1");
+    }
+
+    /** Returns the compiled field plan of the requested bridge fields, compiling it once. */
+    FieldPlan getPlan(List<String> requestFields) {
+        List<String> key = requestFields == null
+            ? Collections.<String>emptyList()
+            : Collections.unmodifiableList(new ArrayList<String>(requestFields));
+        FieldPlan plan = plans.get(key);
+        if (plan == null) {
+            if (plans.size() >= MAX_PLANS) plans.clear();
+            plan = new FieldPlan(key);
+            plans.put(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * The compiled form of a bridge field list: the normalized Solr fl value and how each field is
+     * extracted from a document, so no per-document path evaluation or exception handling is
+     * needed for plain schema fields.
+     */
+    class FieldPlan {
+        private final List<String> fields;
+        private final FieldKind[] kinds;
+        private final JsonPath[] paths;
+        private final String fieldList;
+
+        private FieldPlan(List<String> fields) {
+            this.fields = fields;
+            this.kinds = new FieldKind[fields.size()];
+            this.paths = new JsonPath[fields.size()];
+            List<String> fl = new ArrayList<String>();
+
+            for (int i = 0; i < fields.size(); i++) {
+                String name = fields.get(i);
+                if (name.startsWith("$") || name.contains(".") || name.contains("[")) {
+                    kinds[i] = FieldKind.PATH;
+                    try {
+                        paths[i] = JsonPath.compile(name);
+                    } catch (InvalidPathException e) {
+                        SolrAdapter.logger.debug("Invalid field path {} for the {} structure", name, structure);
+                        kinds[i] = FieldKind.ABSENT;
+                        continue;
+                    }
+                    // Only the top level field needs to be returned by Solr.
+                    String root = StringUtils.substringBefore(
+                        StringUtils.removeStart(StringUtils.removeStart(name, "$"), "."), ".");
+                    root = StringUtils.substringBefore(root, "[");
+                    if (StringUtils.isNotBlank(root) && fl.contains(root) == false) fl.add(root);
+                } else if ("score".equals(name)) {
+                    kinds[i] = FieldKind.SCALAR;
+                    if (fl.contains(name) == false) fl.add(name);
+                } else {
+                    Field field = getField(name);
+                    if (field == null) {
+                        SolrAdapter.logger.debug("The {} field is not defined by the cached {} structure schema", name, structure);
+                        kinds[i] = FieldKind.UNRESOLVED;
+                    } else {
+                        kinds[i] = field.isMultiValued() ? FieldKind.MULTI : FieldKind.SCALAR;
+                    }
+                    if (fl.contains(name) == false) fl.add(name);
+                }
+            }
+            this.fieldList = StringUtils.join(fl, ",");
+        }
+
+        List<String> getFields() {
+            return fields;
+        }
+
+        FieldKind getKind(int index) {
+            return kinds[index];
+        }
+
+        /** Returns the normalized fl parameter value; blank when no requested field exists. */
+        String getFieldList() {
+            return fieldList;
+        }
+
+        Map<String, Object> extract(Object document) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            for (int i = 0; i < kinds.length; i++) {
+                values.put(fields.get(i), extract(document, i));
+            }
+            return values;
+        }
+
+        /** Returns the value of the field at {@code index} in the document. */
+        Object extract(Object document, int index) {
+            Object value = null;
+            switch (kinds[index]) {
+                case SCALAR:
+                case MULTI:
+                case UNRESOLVED:
+                    if (document instanceof Map) value = ((Map<String, Object>)document).get(fields.get(index));
+                    break;
+                case PATH:
+                    try {
+                        value = paths[index].read(document);
+                    } catch (InvalidPathException e) {
+                        value = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return value;
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    private static Field toField(Map<String, Object> field, Map<String, Map<String, Object>> fieldTypes) {
+        String type = (String)field.get("type");
+        Map<String, Object> fieldType = fieldTypes.get(type);
+        Map<String, Object> ngram = findNGramFactory(fieldType);
+        return new Field(
+            (String)field.get("name"),
+            type,
+            attribute("multiValued", field, fieldType),
+            attribute("docValues", field, fieldType),
+            ngram == null ? 0 : integerAttribute("minGramSize", ngram, NGRAM_DEFAULT_MIN_SIZE),
+            ngram == null ? 0 : integerAttribute("maxGramSize", ngram, NGRAM_DEFAULT_MAX_SIZE)
+        );
+    }
+
+    /**
+     * Returns the n-gram tokenizer or filter of the index analyzer of the field type, or null if
+     * it does not index n-grams. Edge n-grams only index prefixes and are not returned.
+     */
+    private static Map<String, Object> findNGramFactory(Map<String, Object> fieldType) {
+        if (fieldType == null) return null;
+        Object analyzer = fieldType.get("indexAnalyzer");
+        if (analyzer instanceof Map == false) analyzer = fieldType.get("analyzer");
+        if (analyzer instanceof Map == false) return null;
+        List<Map<String, Object>> factories = asList(((Map<String, Object>)analyzer).get("filters"));
+        Object tokenizer = ((Map<String, Object>)analyzer).get("tokenizer");
+        if (tokenizer instanceof Map) factories.add(0, (Map<String, Object>)tokenizer);
+        for (Map<String, Object> factory : factories) {
+            String className = StringUtils.substringAfterLast("." + factory.get("class"), ".");
+            if (className.equals("NGramFilterFactory") || className.equals("NGramTokenizerFactory")) {
+                return factory;
+            }
+        }
+        return null;
+    }
+
+    private static int integerAttribute(String name, Map<String, Object> factory, int defaultValue) {
+        Object value = factory.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static boolean attribute(String name, Map<String, Object> field, Map<String, Object> fieldType) {
+        Object value = field.get(name);
+        if (value == null && fieldType != null) value = fieldType.get(name);
+        return Boolean.TRUE.equals(value) || "true".equals(value);
+    }
+
+    private static List<Map<String, Object>> asList(Object value) {
+        List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        if (value instanceof List) {
+            for (Object item : (List<Object>)value) {
+                if (item instanceof Map) result.add((Map<String, Object>)item);
+            }
+        }
+        return result;
+    }
+
+}
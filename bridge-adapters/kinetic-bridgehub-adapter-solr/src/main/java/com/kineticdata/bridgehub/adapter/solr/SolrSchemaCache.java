@@ -0,0 +1,145 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeError;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches the schema of each structure for a configurable time to live. An expired schema keeps
+ * being served while a single background refresh replaces it, and a structure whose schema could
+ * not be loaded is not retried until its time to live has passed again. A schema that is not
+ * cached yet is loaded by a single caller while concurrent callers wait for it, each until its own
+ * deadline.
+ */
+class SolrSchemaCache {
+
+    /** Loads the schema of a structure from Solr, giving up at the deadline (System.nanoTime). */
+    interface Loader {
+        SolrSchema load(String structure, long deadline) throws BridgeError;
+    }
+
+    private static class Entry {
+        private final SolrSchema schema;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private Entry(SolrSchema schema, long loadedAt) {
+            this.schema = schema;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final Map<String, FutureTask<Entry>> loads = new ConcurrentHashMap<String, FutureTask<Entry>>();
+    private final Loader loader;
+    private final Executor executor;
+    private final long ttlMillis;
+    private final long loadTimeoutMillis;
+
+    /**
+     * @param loadTimeoutMillis the time background refreshes and prefetches are given to load a
+     * schema
+     */
+    SolrSchemaCache(Loader loader, Executor executor, long ttlMillis, long loadTimeoutMillis) {
+        this.loader = loader;
+        this.executor = executor;
+        this.ttlMillis = ttlMillis;
+        this.loadTimeoutMillis = loadTimeoutMillis;
+    }
+
+    /**
+     * Returns the schema of the structure, or null if it is not available or could not be loaded
+     * before the deadline (System.nanoTime).
+     */
+    SolrSchema get(final String structure, long deadline) {
+        final Entry entry = entries.get(structure);
+        if (entry == null) {
+            Entry loaded = loadOnce(structure, deadline);
+            return loaded == null ? null : loaded.schema;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > ttlMillis && entry.refreshing.compareAndSet(false, true)) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load(structure, System.nanoTime() + loadTimeoutMillis * 1000000L);
+                }
+            });
+        }
+        return entry.schema;
+    }
+
+    /** Loads the schema of the structure in the background if it is not cached yet. */
+    void prefetch(final String structure) {
+        if (entries.containsKey(structure) == false) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    get(structure, System.nanoTime() + loadTimeoutMillis * 1000000L);
+                }
+            });
+        }
+    }
+
+    void invalidate(String structure) {
+        entries.remove(structure);
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    /**
+     * Loads the schema on the calling thread, or waits until the deadline for the load another
+     * thread has already started. Returns null when the deadline passes first.
+     */
+    private Entry loadOnce(final String structure, final long deadline) {
+        FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+            @Override
+            public Entry call() {
+                return load(structure, deadline);
+            }
+        });
+        FutureTask<Entry> running = loads.putIfAbsent(structure, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                loads.remove(structure, task);
+            }
+            running = task;
+        }
+        try {
+            return running.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            SolrAdapter.logger.debug("The schema of the {} structure was not loaded before the request deadline", structure);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Entry load(String structure, long deadline) {
+        SolrSchema schema = null;
+        try {
+            schema = loader.load(structure, deadline);
+        } catch (BridgeError e) {
+            SolrAdapter.logger.warn(String.format(
+                "Unable to load the schema of the %s structure, falling back to path based field extraction: %s",
+                structure, e.getMessage()));
+        }
+        Entry entry = new Entry(schema, System.currentTimeMillis());
+        entries.put(structure, entry);
+        return entry;
+    }
+
+}
@@ -0,0 +1,353 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A fixed size list of records that are stored in a memory-mapped temporary file instead of on
+ * the heap. The records are written one after another in a compact binary encoding, the file is
+ * removed as soon as it is mapped, and a {@link Record} is only decoded when a caller asks for its
+ * row. A row that is changed through its record is kept on the heap, so later reads of the row
+ * see the change. The mapped storage is released with the list once it is garbage collected.
+ */
+class SolrSpilledRecords extends AbstractList<Record> {
+
+    /** Defines the value tags of the binary encoding */
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_TRUE = 5;
+    private static final byte TAG_FALSE = 6;
+    private static final byte TAG_LIST = 7;
+    private static final byte TAG_MAP = 8;
+    private static final byte TAG_BIG_INTEGER = 9;
+    private static final byte TAG_BIG_DECIMAL = 10;
+    private static final byte TAG_FLOAT = 11;
+
+    private final List<String> fields;
+    private final ByteBuffer buffer;
+    private final int[] offsets;
+    private final int size;
+    private final Map<Integer, Map<String, Object>> writtenRows = new ConcurrentHashMap<Integer, Map<String, Object>>();
+
+    private SolrSpilledRecords(List<String> fields, ByteBuffer buffer, int[] offsets, int size) {
+        this.fields = fields;
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    @Override
+    public Record get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", row, size));
+        }
+        return new Record(new RowMap(row));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Returns the number of bytes the encoded records take in the mapped file. */
+    long getBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * The values of a row, decoded from the mapped file, or the copy of the row once it has been
+     * changed through any record of the row.
+     */
+    private class RowMap extends AbstractMap<String, Object> {
+        private final int row;
+        private Map<String, Object> decoded = null;
+
+        RowMap(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return read().get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return read().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return read().size();
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return write().put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return write().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            write().clear();
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return read().entrySet();
+        }
+
+        /** Returns the changed copy of the row, or its decoded values, which must not be changed. */
+        private Map<String, Object> read() {
+            Map<String, Object> written = writtenRows.isEmpty() ? null : writtenRows.get(row);
+            if (written != null) return written;
+            if (decoded == null) decoded = Collections.unmodifiableMap(decode(row));
+            return decoded;
+        }
+
+        /** Returns the copy of the row, decoding it from the file on the first change. */
+        private Map<String, Object> write() {
+            Map<String, Object> written = writtenRows.get(row);
+            if (written == null) {
+                Map<String, Object> copy = decode(row);
+                written = writtenRows.putIfAbsent(row, copy);
+                if (written == null) written = copy;
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Encodes records into a temporary file. A writer that is closed before it is finished
+     * removes its file.
+     */
+    static class Writer implements Closeable {
+        private final List<String> fields;
+        private final File file;
+        private final DataOutputStream output;
+        private int[] offsets = new int[256];
+        private int size = 0;
+        private boolean finished = false;
+
+        Writer(List<String> fields) throws IOException {
+            this.fields = new ArrayList<String>(fields);
+            this.file = File.createTempFile("solr-bridge-", ".spill");
+            try {
+                this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            } catch (IOException e) {
+                file.delete();
+                throw e;
+            }
+        }
+
+        /** Appends the values of the writer fields as the next record. */
+        void write(Map<String, Object> values) throws IOException {
+            if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+            offsets[size++] = output.size();
+            for (String field : fields) {
+                writeValue(values.get(field));
+            }
+            // DataOutputStream stops counting at Integer.MAX_VALUE, which a single mapping can't exceed.
+            if (output.size() == Integer.MAX_VALUE) {
+                throw new IOException("The spilled records exceed the 2GB limit of a mapped file.");
+            }
+        }
+
+        /** Maps the written records and removes the file, its storage is kept until the list is released. */
+        SolrSpilledRecords finish() throws IOException {
+            output.close();
+            ByteBuffer buffer;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+                FileChannel channel = randomAccessFile.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                finished = true;
+                delete();
+            }
+            return new SolrSpilledRecords(fields, buffer, offsets, size);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished == false) {
+                finished = true;
+                try {
+                    output.close();
+                } finally {
+                    delete();
+                }
+            }
+        }
+
+        private void delete() {
+            // A mapped file can't be removed on every platform, it is removed on exit instead.
+            if (file.delete() == false) file.deleteOnExit();
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                output.writeByte(TAG_NULL);
+            } else if (value instanceof String) {
+                output.writeByte(TAG_STRING);
+                writeString((String)value);
+            } else if (value instanceof Integer) {
+                output.writeByte(TAG_INTEGER);
+                output.writeInt((Integer)value);
+            } else if (value instanceof Long) {
+                output.writeByte(TAG_LONG);
+                output.writeLong((Long)value);
+            } else if (value instanceof Double) {
+                output.writeByte(TAG_DOUBLE);
+                output.writeDouble((Double)value);
+            } else if (value instanceof Float) {
+                output.writeByte(TAG_FLOAT);
+                output.writeFloat((Float)value);
+            } else if (value instanceof Boolean) {
+                output.writeByte((Boolean)value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof BigInteger) {
+                output.writeByte(TAG_BIG_INTEGER);
+                writeString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                output.writeByte(TAG_BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof List) {
+                List<?> list = (List<?>)value;
+                output.writeByte(TAG_LIST);
+                writeLength(list.size());
+                for (Object item : list) {
+                    writeValue(item);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>)value;
+                output.writeByte(TAG_MAP);
+                writeLength(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+            } else {
+                output.writeByte(TAG_STRING);
+                writeString(value.toString());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeLength(bytes.length);
+            output.write(bytes);
+        }
+
+        /** Writes a non negative length in as few bytes as possible, 7 bits at a time. */
+        private void writeLength(int length) throws IOException {
+            while ((length & ~0x7F) != 0) {
+                output.writeByte((length & 0x7F) | 0x80);
+                length >>>= 7;
+            }
+            output.writeByte(length);
+        }
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    private Map<String, Object> decode(int row) {
+        // Every read uses its own view of the buffer so rows can be read concurrently.
+        ByteBuffer view = buffer.duplicate();
+        view.position(offsets[row]);
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (String field : fields) {
+            values.put(field, readValue(view));
+        }
+        return values;
+    }
+
+    private static Object readValue(ByteBuffer view) {
+        byte tag = view.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(view);
+            case TAG_INTEGER:
+                return view.getInt();
+            case TAG_LONG:
+                return view.getLong();
+            case TAG_DOUBLE:
+                return view.getDouble();
+            case TAG_FLOAT:
+                return view.getFloat();
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_BIG_INTEGER:
+                return new BigInteger(readString(view));
+            case TAG_BIG_DECIMAL:
+                return new BigDecimal(readString(view));
+            case TAG_LIST: {
+                int length = readLength(view);
+                List<Object> list = new ArrayList<Object>(length);
+                for (int i = 0; i < length; i++) {
+                    list.add(readValue(view));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int length = readLength(view);
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                for (int i = 0; i < length; i++) {
+                    String key = readString(view);
+                    map.put(key, readValue(view));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalStateException(String.format("Unknown value tag %d in the spilled records.", tag));
+        }
+    }
+
+    private static String readString(ByteBuffer view) {
+        byte[] bytes = new byte[readLength(view)];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(ByteBuffer view) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = view.get();
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return length;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The tuples of a /stream handler response. The response is decoded one tuple at a time, only
+ * the first tuples up to the limit are kept, and decoding stops at the EOF tuple or at the first
+ * EXCEPTION tuple.
+ */
+class SolrTupleStream {
+
+    private final List<Map<String, Object>> tuples;
+    private final long count;
+    private final String exception;
+
+    private SolrTupleStream(List<Map<String, Object>> tuples, long count, String exception) {
+        this.tuples = tuples;
+        this.count = count;
+        this.exception = exception;
+    }
+
+    /** Decodes the {"result-set":{"docs":[...]}} response, keeping at most maxTuples tuples. */
+    static SolrTupleStream decode(Reader reader, int maxTuples) throws IOException {
+        TupleHandler handler = new TupleHandler(maxTuples);
+        try {
+            new JSONParser().parse(reader, handler);
+        } catch (ParseException e) {
+            throw new IOException("The Solr stream response is not valid JSON.", e);
+        }
+        return new SolrTupleStream(handler.tuples, handler.count, handler.exception);
+    }
+
+    /** Returns the first tuples of the stream, without the EOF tuple. */
+    List<Map<String, Object>> getTuples() {
+        return tuples;
+    }
+
+    /** Returns the number of tuples in the stream, including the ones that were not kept. */
+    long getCount() {
+        return count;
+    }
+
+    /** Returns the message of the EXCEPTION tuple that ended the stream, or null. */
+    String getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SolrTupleStream{count=%d, exception=%s, tuples=%s}", count, exception, tuples);
+    }
+
+    /*----------------------------------------------------------------------------------------------
+     * PRIVATE HELPER METHODS
+     *--------------------------------------------------------------------------------------------*/
+
+    /** Builds one tuple at a time from the parser events of the docs array. */
+    private static class TupleHandler implements ContentHandler {
+        private final int maxTuples;
+        private final List<Map<String, Object>> tuples = new ArrayList<Map<String, Object>>();
+        /** The open objects and arrays of the current tuple, innermost first. */
+        private final LinkedList<Object> containers = new LinkedList<Object>();
+        /** The keys of the open object entries, innermost first. */
+        private final LinkedList<String> keys = new LinkedList<String>();
+        private boolean inDocs = false;
+        private long count = 0;
+        private String exception = null;
+
+        TupleHandler(int maxTuples) {
+            this.maxTuples = maxTuples;
+        }
+
+        @Override
+        public void startJSON() {}
+
+        @Override
+        public void endJSON() {}
+
+        @Override
+        public boolean startObject() {
+            if (containers.isEmpty() == false || inDocs) {
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                if (containers.isEmpty() == false) add(map);
+                containers.push(map);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            if (containers.isEmpty() == false) {
+                Object completed = containers.pop();
+                if (containers.isEmpty()) return onTuple((Map<String, Object>)completed);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            keys.push(key);
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            keys.pop();
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            if (containers.isEmpty() == false) {
+                List<Object> list = new ArrayList<Object>();
+                add(list);
+                containers.push(list);
+            } else if (keys.size() == 2 && "docs".equals(keys.get(0)) && "result-set".equals(keys.get(1))) {
+                inDocs = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            if (containers.isEmpty() == false) {
+                containers.pop();
+            } else {
+                inDocs = false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (containers.isEmpty() == false) add(value);
+            return true;
+        }
+
+        private void add(Object value) {
+            Object container = containers.peek();
+            if (container instanceof Map) {
+                ((Map<String, Object>)container).put(keys.peek(), value);
+            } else {
+                ((List<Object>)container).add(value);
+            }
+        }
+
+        /** Keeps the tuple, returns false to stop parsing at the end of the stream. */
+        private boolean onTuple(Map<String, Object> tuple) {
+            if (tuple.containsKey("EXCEPTION")) {
+                exception = String.valueOf(tuple.get("EXCEPTION"));
+                return false;
+            }
+            if (tuple.containsKey("EOF")) {
+                return false;
+            }
+            count++;
+            if (tuples.size() < maxTuples) tuples.add(tuple);
+            return true;
+        }
+    }
+
+}
@@ -4,9 +4,21 @@ import com.kineticdata.bridgehub.adapter.BridgeError;
 import com.kineticdata.bridgehub.adapter.BridgeRequest;
 import com.kineticdata.bridgehub.adapter.Count;
 import com.kineticdata.bridgehub.adapter.Record;
+import com.kineticdata.bridgehub.adapter.RecordList;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Ignore;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -15,6 +27,8 @@ public class SolrAdapterTest {
     //solr start -e techproducts
     private final String apiUrl = "http://localhost:8983/solr";
     private final String structure = "techproducts";
+    /** Set once testLeadingWildcardRewrite changed the techproducts schema. */
+    private boolean rewriteSchemaAdded = false;
     
     @Test
     public void testCountResults() throws Exception {
@@ -241,4 +255,178 @@ public class SolrAdapterTest {
         
     }
     
+    @Test
+    public void testDeltaSearch() throws Exception {
+        Map<String,String> configuration = new HashMap<String,String>();
+        configuration.put("Solr URL", apiUrl);
+        
+        SolrAdapter adapter = new SolrAdapter();
+        adapter.setProperties(configuration);
+        adapter.initialize();
+        
+        Map<String, String> bridgeMetadata = new HashMap<String, String>();
+        bridgeMetadata.put("pageSize", "10");
+        bridgeMetadata.put("offset", "5");
+        bridgeMetadata.put("watermark", "");
+        
+        BridgeRequest request = new BridgeRequest();
+        request.setMetadata(bridgeMetadata);
+        request.setStructure(structure);
+        request.setQuery("*:*");
+        request.setFields(Arrays.asList("name"));
+        
+        assertEquals(String.format("%s/%s/select?wt=json&rows=10&start=0", apiUrl, structure),
+            adapter.buildUrl("delta", request));
+        
+        // Page through the whole structure, the offset is ignored in favor of the cursor.
+        int total = 0;
+        RecordList page;
+        do {
+            page = adapter.search(request);
+            total += page.getRecords().size();
+            bridgeMetadata.put("cursorMark", page.getMetadata().get("nextCursorMark"));
+            bridgeMetadata.put("highWatermark", page.getMetadata().get("highWatermark"));
+        } while ("true".equals(page.getMetadata().get("complete")) == false);
+        assertEquals(Integer.parseInt(page.getMetadata().get("count")), total);
+        
+        // Nothing changed since the high watermark of the completed delta.
+        bridgeMetadata.put("watermark", page.getMetadata().get("highWatermark"));
+        bridgeMetadata.remove("cursorMark");
+        bridgeMetadata.remove("highWatermark");
+        page = adapter.search(request);
+        assertEquals("0", page.getMetadata().get("count"));
+        assertEquals(bridgeMetadata.get("watermark"), page.getMetadata().get("highWatermark"));
+    }
+    
+    /**
+     * Indexes synthetic documents with reversed and n-gram companion fields into techproducts,
+     * checks that the rewritten endsWith and like matchers find exactly the documents the leading
+     * wildcard queries find, then reports the average latency of both. The schema additions and
+     * documents are removed after the test.
+     */
+    @Ignore("Changes the techproducts schema and indexes 50000 documents, run it on demand.")
+    @Test
+    public void testLeadingWildcardRewrite() throws Exception {
+        int documentCount = 50000;
+        List<String> names = new ArrayList<String>();
+        CloseableHttpClient client = HttpClients.createDefault();
+        try {
+            postJson(client, String.format("%s/%s/schema", apiUrl, structure),
+                "{\"add-field-type\": [" +
+                    "{\"name\": \"bench_reversed\", \"class\": \"solr.TextField\", \"analyzer\": {" +
+                        "\"tokenizer\": {\"class\": \"solr.KeywordTokenizerFactory\"}," +
+                        "\"filters\": [{\"class\": \"solr.ReverseStringFilterFactory\"}]}}," +
+                    "{\"name\": \"bench_ngram\", \"class\": \"solr.TextField\"," +
+                        "\"indexAnalyzer\": {\"tokenizer\": {\"class\": \"solr.KeywordTokenizerFactory\"}," +
+                            "\"filters\": [{\"class\": \"solr.NGramFilterFactory\", \"minGramSize\": \"3\", \"maxGramSize\": \"16\"}]}," +
+                        "\"queryAnalyzer\": {\"tokenizer\": {\"class\": \"solr.KeywordTokenizerFactory\"}}}]," +
+                "\"add-field\": [" +
+                    "{\"name\": \"bench_name_rev\", \"type\": \"bench_reversed\", \"stored\": false}," +
+                    "{\"name\": \"bench_name_ngram\", \"type\": \"bench_ngram\", \"stored\": false}]," +
+                "\"add-copy-field\": [" +
+                    "{\"source\": \"bench_name_s\", \"dest\": [\"bench_name_rev\", \"bench_name_ngram\"]}]}");
+            rewriteSchemaAdded = true;
+
+            StringBuilder documents = new StringBuilder("[");
+            for (int i = 0; i < documentCount; i++) {
+                names.add(String.format("Product %08x", (i * 2654435761L) & 0xffffffffL));
+                if (i > 0) documents.append(",");
+                documents.append(String.format("{\"id\": \"bench-%d\", \"bench_name_s\": \"%s\"}", i, names.get(i)));
+            }
+            postJson(client, String.format("%s/%s/update?commit=true", apiUrl, structure), documents.append("]").toString());
+        } finally {
+            client.close();
+        }
+
+        Map<String,String> configuration = new HashMap<String,String>();
+        configuration.put("Solr URL", apiUrl);
+        configuration.put("Leading Wildcard Policy", "allow");
+        SolrAdapter plainAdapter = new SolrAdapter();
+        plainAdapter.setProperties(configuration);
+        plainAdapter.initialize();
+        configuration.put("Wildcard Rewrites", String.format(
+            "{\"%s\": {\"bench_name_s\": {\"reversed\": \"bench_name_rev\", \"ngram\": \"bench_name_ngram\"}}}", structure));
+        SolrAdapter rewriteAdapter = new SolrAdapter();
+        rewriteAdapter.setProperties(configuration);
+        rewriteAdapter.initialize();
+
+        Map<String, String> bridgeParameters = new HashMap<String, String>();
+        BridgeRequest request = new BridgeRequest();
+        request.setParameters(bridgeParameters);
+        request.setMetadata(new HashMap<String, String>());
+        request.setStructure(structure);
+        request.setQuery("{\"type\": \"Kinetic DSL\", \"query\": \"<%= parameter[\"kinetic json query\"] %>\"}");
+        long totalMatches = 0;
+        for (String matcher : Arrays.asList("endsWith", "like")) {
+            for (int i = 0; i < 20; i++) {
+                String value = String.format("%04x", (i * 40503) & 0xffff);
+                long expectedCount = 0;
+                for (String name : names) {
+                    if (matcher.equals("like") ? name.contains(value) : name.endsWith(value)) expectedCount++;
+                }
+                bridgeParameters.put("kinetic json query", String.format(
+                    "{\"bench_name_s\": { \"value\": \"%s\", \"matcher\": \"%s\" } }", value, matcher));
+
+                assertEquals(Long.valueOf(expectedCount), plainAdapter.count(request).getValue());
+                assertEquals(Long.valueOf(expectedCount), rewriteAdapter.count(request).getValue());
+                totalMatches += expectedCount;
+            }
+        }
+        assertTrue(totalMatches > 0);
+
+        // Compare the latency of the leading wildcard and the rewritten queries.
+        int iterations = 50;
+        for (String matcher : Arrays.asList("endsWith", "like")) {
+            long plainNanos = 0;
+            long rewriteNanos = 0;
+            for (int i = 0; i < iterations; i++) {
+                // Vary the value so the query result cache does not answer the query.
+                bridgeParameters.put("kinetic json query", String.format(
+                    "{\"bench_name_s\": { \"value\": \"%04x\", \"matcher\": \"%s\" } }", (i * 7919 + 13) & 0xffff, matcher));
+                long start = System.nanoTime();
+                plainAdapter.count(request);
+                plainNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                rewriteAdapter.count(request);
+                rewriteNanos += System.nanoTime() - start;
+            }
+            System.out.println(String.format("%s over %d documents: leading wildcard %.2f ms, rewritten %.2f ms",
+                matcher, documentCount, plainNanos / iterations / 1e6, rewriteNanos / iterations / 1e6));
+        }
+    }
+
+    @After
+    public void removeRewriteSchema() throws Exception {
+        if (rewriteSchemaAdded == false) return;
+        CloseableHttpClient client = HttpClients.createDefault();
+        try {
+            postJson(client, String.format("%s/%s/update?commit=true", apiUrl, structure),
+                "{\"delete\": {\"query\": \"id:bench-*\"}}");
+            postJson(client, String.format("%s/%s/schema", apiUrl, structure),
+                "{\"delete-copy-field\": [" +
+                    "{\"source\": \"bench_name_s\", \"dest\": \"bench_name_rev\"}," +
+                    "{\"source\": \"bench_name_s\", \"dest\": \"bench_name_ngram\"}]," +
+                "\"delete-field\": [{\"name\": \"bench_name_rev\"}, {\"name\": \"bench_name_ngram\"}]," +
+                "\"delete-field-type\": [{\"name\": \"bench_reversed\"}, {\"name\": \"bench_ngram\"}]}");
+        } finally {
+            client.close();
+        }
+    }
+
+    /** Posts a JSON body and fails the test unless Solr accepted it. */
+    private void postJson(CloseableHttpClient client, String url, String body) throws Exception {
+        HttpPost post = new HttpPost(url);
+        post.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        CloseableHttpResponse response = client.execute(post);
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            String responseBody = EntityUtils.toString(response.getEntity());
+            // The schema API reports rejected commands in an errors key of a 200 response.
+            assertTrue(String.format("%s returned %d: %s", url, statusCode, responseBody),
+                statusCode == 200 && responseBody.contains("\"errors\"") == false);
+        } finally {
+            response.close();
+        }
+    }
+    
 }
@@ -0,0 +1,78 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrCircuitBreakerTest {
+
+    /** A circuit breaker whose clock only moves when the test advances it. */
+    private static class ManualClockCircuitBreaker extends SolrCircuitBreaker {
+        private long now = 0;
+
+        ManualClockCircuitBreaker() {
+            super(10, 4, 50, 100, 1000, 30000, 2);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        ManualClockCircuitBreaker breaker = new ManualClockCircuitBreaker();
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(10);
+        }
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(10);
+        assertEquals(SolrCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(10);
+
+        assertEquals(SolrCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() {
+        ManualClockCircuitBreaker breaker = new ManualClockCircuitBreaker();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(5000);
+        }
+        assertEquals(SolrCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbing() {
+        ManualClockCircuitBreaker breaker = new ManualClockCircuitBreaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure(10);
+        }
+        breaker.now = 30000;
+
+        // Only the configured number of probes is let through.
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(SolrCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // A failed probe opens the breaker again.
+        breaker.onFailure(10);
+        assertEquals(SolrCircuitBreaker.State.OPEN, breaker.getState());
+
+        breaker.now = 60000;
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(10);
+        breaker.onSuccess(10);
+        assertEquals(SolrCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Ignore;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrColumnarRecordsTest {
+
+    private static final String[] STATUSES = {"New", "In Progress", "Closed"};
+    private static final int FIELD_COUNT = 20;
+
+    private SolrSchema buildSchema() {
+        Map<String, SolrSchema.Field> fields = new HashMap<String, SolrSchema.Field>();
+        fields.put("id", new SolrSchema.Field("id", "string", false, true));
+        fields.put("status", new SolrSchema.Field("status", "string", false, true));
+        fields.put("price", new SolrSchema.Field("price", "pdouble", false, true));
+        fields.put("popularity", new SolrSchema.Field("popularity", "pint", false, true));
+        fields.put("inStock", new SolrSchema.Field("inStock", "boolean", false, true));
+        fields.put("cat", new SolrSchema.Field("cat", "strings", true, true));
+        List<SolrSchema.Field> dynamicFields = Arrays.asList(new SolrSchema.Field("*_s", "string", false, true));
+        return new SolrSchema("techproducts", "id", fields, dynamicFields);
+    }
+
+    /** Builds a document whose string values are distinct objects, as they are after JSON parsing. */
+    private Map<String, Object> buildDocument(int index) {
+        Map<String, Object> document = new HashMap<String, Object>();
+        document.put("id", "DOC-" + index);
+        document.put("status", new String(STATUSES[index % STATUSES.length]));
+        document.put("price", index % 7 == 0 ? null : index * 1.5d);
+        document.put("popularity", index % 10);
+        document.put("inStock", index % 2 == 0);
+        document.put("cat", Arrays.asList("electronics", "category " + (index % 3)));
+        for (int i = 0; i < FIELD_COUNT - 6; i++) {
+            document.put("attribute" + i + "_s", new String("value " + (index % 5)));
+        }
+        return document;
+    }
+
+    private List<String> buildFields() {
+        List<String> fields = new ArrayList<String>(Arrays.asList("id", "status", "price", "popularity", "inStock", "cat"));
+        for (int i = 0; i < FIELD_COUNT - 6; i++) {
+            fields.add("attribute" + i + "_s");
+        }
+        return fields;
+    }
+
+    @Test
+    public void testRecordsMatchMapExtraction() {
+        SolrSchema.FieldPlan plan = buildSchema().getPlan(buildFields());
+        List<Object> documents = buildDocuments(100);
+        documents.add(Collections.emptyMap());
+
+        SolrColumnarRecords records = SolrColumnarRecords.fromDocuments(plan, documents);
+
+        assertEquals(documents.size(), records.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Map<String, Object> expected = plan.extract(documents.get(i));
+            Record record = records.get(i);
+            assertEquals(expected, record.getRecord());
+            assertEquals(expected.get("price"), record.getValue("price"));
+        }
+        assertNull(records.get(100).getValue("status"));
+        assertEquals(Integer.valueOf(3), records.get(3).getValue("popularity"));
+        assertEquals(Boolean.TRUE, records.get(4).getValue("inStock"));
+    }
+
+    /**
+     * Repeated strings are stored once per column instead of once per document, the documents
+     * hold a distinct String instance for each value.
+     */
+    @Test
+    public void testRepeatedStringsAreShared() {
+        SolrSchema.FieldPlan plan = buildSchema().getPlan(buildFields());
+        List<Object> documents = buildDocuments(1000);
+
+        SolrColumnarRecords records = SolrColumnarRecords.fromDocuments(plan, documents);
+
+        Object status = ((Map<String, Object>)documents.get(0)).get("status");
+        assertNotSame(status, ((Map<String, Object>)documents.get(STATUSES.length)).get("status"));
+        for (int i = STATUSES.length; i < documents.size(); i += STATUSES.length) {
+            assertSame(records.get(0).getValue("status"), records.get(i).getValue("status"));
+            assertSame(records.get(0).getValue("attribute0_s"), records.get(i * 5 % 1000).getValue("attribute0_s"));
+        }
+    }
+
+    @Test
+    public void testRecordsAreMutable() {
+        SolrSchema.FieldPlan plan = buildSchema().getPlan(buildFields());
+        List<Object> documents = buildDocuments(10);
+        SolrColumnarRecords records = SolrColumnarRecords.fromDocuments(plan, documents);
+        Map<String, Object> expected = plan.extract(documents.get(2));
+
+        Record record = records.get(2);
+        record.getRecord().put("status", "Reopened");
+        record.getRecord().put("note", "added");
+        record.getRecord().remove("price");
+        expected.put("status", "Reopened");
+        expected.put("note", "added");
+        expected.remove("price");
+
+        assertEquals(expected, record.getRecord());
+        // The change is kept by the list like a map backed record, other rows are not affected.
+        assertEquals(expected, records.get(2).getRecord());
+        assertEquals(plan.extract(documents.get(3)), records.get(3).getRecord());
+        assertEquals(STATUSES[0], records.get(3 * STATUSES.length).getValue("status"));
+    }
+
+    /**
+     * Compares the heap retained by 10000 documents of 20 fields stored as one HashMap backed
+     * Record per document with the same documents stored by column. The heap is measured after
+     * forcing garbage collections, which depends on the JVM, so the test is run on demand.
+     */
+    @Ignore("Measures the heap with System.gc(), run it on demand.")
+    @Test
+    public void testMemoryFootprint() {
+        SolrSchema.FieldPlan plan = buildSchema().getPlan(buildFields());
+        int documentCount = 10000;
+
+        long before = usedMemory();
+        List<Object> documents = buildDocuments(documentCount);
+        List<Record> mapRecords = new ArrayList<Record>();
+        for (Object document : documents) {
+            mapRecords.add(new Record(plan.extract(document)));
+        }
+        documents = null;
+        long mapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        documents = buildDocuments(documentCount);
+        SolrColumnarRecords columnarRecords = SolrColumnarRecords.fromDocuments(plan, documents);
+        documents = null;
+        long columnarBytes = usedMemory() - before;
+
+        System.out.println(String.format(
+            "%d documents x %d fields: HashMap records %d KB, columnar records %d KB",
+            documentCount, FIELD_COUNT, mapBytes / 1024, columnarBytes / 1024));
+        assertEquals(mapRecords.size(), columnarRecords.size());
+        assertTrue(columnarBytes < mapBytes);
+    }
+
+    private List<Object> buildDocuments(int count) {
+        List<Object> documents = new ArrayList<Object>();
+        for (int i = 0; i < count; i++) {
+            documents.add(buildDocument(i));
+        }
+        return documents;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrConcurrencyLimiterTest {
+
+    private static final long MILLISECOND = 1000000L;
+
+    @Test
+    public void testRejectsAboveLimit() {
+        SolrConcurrencyLimiter limiter = new SolrConcurrencyLimiter(2, 1, 10, 2.0, 0.9);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getRejections());
+
+        limiter.onIgnored();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testGrowsWhileLatencyIsStable() {
+        SolrConcurrencyLimiter limiter = new SolrConcurrencyLimiter(2, 1, 4, 2.0, 0.9);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            assertTrue(limiter.tryAcquire());
+            limiter.onSuccess(10 * MILLISECOND);
+            limiter.onSuccess(10 * MILLISECOND);
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testBacksOffOnSlowAndDroppedRequests() {
+        SolrConcurrencyLimiter limiter = new SolrConcurrencyLimiter(10, 1, 10, 2.0, 0.5);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(10 * MILLISECOND);
+        }
+        assertEquals(10, limiter.getLimit());
+        // Every request slows down, the requests are queueing.
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(100 * MILLISECOND);
+        }
+        assertEquals(5, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onDropped();
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testMixedLatenciesKeepLimit() {
+        SolrConcurrencyLimiter limiter = new SolrConcurrencyLimiter(10, 1, 20, 2.0, 0.9);
+
+        // Fast real-time gets mixed with facet queries a hundred times slower.
+        for (int i = 0; i < 2000; i++) {
+            for (int j = 0; j < 10; j++) {
+                assertTrue(limiter.tryAcquire());
+            }
+            for (int j = 0; j < 10; j++) {
+                limiter.onSuccess((i + j) % 3 == 0 ? 200 * MILLISECOND : 2 * MILLISECOND);
+            }
+        }
+        assertTrue(limiter.getLimit() >= 10);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+}
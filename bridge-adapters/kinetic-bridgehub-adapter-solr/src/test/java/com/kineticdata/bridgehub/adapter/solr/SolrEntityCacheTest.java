@@ -0,0 +1,94 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrEntityCacheTest {
+
+    private static final SolrEntityCache.VersionLoader NO_VERSION = new SolrEntityCache.VersionLoader() {
+        @Override
+        public String load(String structure) {
+            return null;
+        }
+    };
+
+    /** An entity cache whose clock only moves when the test advances it. */
+    private static class ManualClockEntityCache extends SolrEntityCache {
+        private long now = 1000000;
+
+        ManualClockEntityCache(long maxBytes, long ttlMillis, long versionCheckMillis, VersionLoader versionLoader) {
+            super(maxBytes, ttlMillis, versionCheckMillis, versionLoader);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private Map<String, Object> values(Object... keyValues) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            values.put((String)keyValues[i], keyValues[i + 1]);
+        }
+        return values;
+    }
+
+    @Test
+    public void testServesSubsetOfCachedFields() {
+        SolrEntityCache cache = new SolrEntityCache(1024 * 1024, 60000, 0, NO_VERSION);
+        cache.put("techproducts", "SP2514N", values("id", "SP2514N", "name", "Samsung SpinPoint"));
+        cache.put("techproducts", "SP2514N", values("id", "SP2514N", "price", 92.0));
+
+        assertEquals(values("id", "SP2514N", "price", 92.0),
+            cache.get("techproducts", "SP2514N", Arrays.asList("id", "price")));
+        assertEquals("Samsung SpinPoint",
+            cache.get("techproducts", "SP2514N", Arrays.asList("name")).get("name"));
+        assertNull(cache.get("techproducts", "SP2514N", Arrays.asList("id", "manu")));
+        assertNull(cache.get("products", "SP2514N", Arrays.asList("id")));
+    }
+
+    @Test
+    public void testExpiresAndEvicts() {
+        ManualClockEntityCache expiring = new ManualClockEntityCache(1024 * 1024, 1000, 0, NO_VERSION);
+        expiring.put("techproducts", 1L, values("id", 1L));
+        expiring.now += 1000;
+        assertNotNull(expiring.get("techproducts", 1L, Arrays.asList("id")));
+        expiring.now += 1;
+        assertNull(expiring.get("techproducts", 1L, Arrays.asList("id")));
+        assertEquals(0, expiring.size());
+
+        // Room for a few hundred small documents, the least recently used ones are evicted.
+        SolrEntityCache cache = new SolrEntityCache(20000, 60000, 0, NO_VERSION);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("techproducts", i, values("id", i, "name", "Document " + i));
+        }
+        assertTrue(cache.getBytes() <= 20000);
+        assertTrue(cache.size() > 0 && cache.size() < 1000);
+        assertNull(cache.get("techproducts", 0, Arrays.asList("id")));
+        assertNotNull(cache.get("techproducts", 999, Arrays.asList("id")));
+    }
+
+    @Test
+    public void testIndexVersionChangeInvalidates() {
+        final String[] version = {"1"};
+        ManualClockEntityCache cache = new ManualClockEntityCache(1024 * 1024, 60000, 1000, new SolrEntityCache.VersionLoader() {
+            @Override
+            public String load(String structure) {
+                return version[0];
+            }
+        });
+        cache.put("techproducts", "SP2514N", values("id", "SP2514N"));
+        assertNotNull(cache.get("techproducts", "SP2514N", Arrays.asList("id")));
+
+        version[0] = "2";
+        // The version is not checked again within the check interval.
+        assertNotNull(cache.get("techproducts", "SP2514N", Arrays.asList("id")));
+        cache.now += 1001;
+        assertNull(cache.get("techproducts", "SP2514N", Arrays.asList("id")));
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.jayway.jsonpath.JsonPath;
+import com.kineticdata.bridgehub.adapter.Record;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrFacetsTest {
+
+    private final String facetsResponse = "{"
+        + "\"count\": 32,"
+        + "\"maxPrice\": 2199.0,"
+        + "\"categories\": {\"buckets\": ["
+        + "  {\"val\": \"electronics\", \"count\": 12, \"avgPrice\": 215.5},"
+        + "  {\"val\": \"memory\", \"count\": 3, \"avgPrice\": 94.3}"
+        + "]},"
+        + "\"prices\": {"
+        + "  \"buckets\": [{\"val\": 0.0, \"count\": 5}, {\"val\": 100.0, \"count\": 4}],"
+        + "  \"after\": {\"count\": 7}"
+        + "}"
+        + "}";
+
+    private Map<String, Object> parseFacets() {
+        return JsonPath.parse(facetsResponse).read("$", Map.class);
+    }
+
+    @Test
+    public void testBucketsBecomeRecords() {
+        SolrFacets facets = SolrFacets.fromResponse(parseFacets(), Collections.<String>emptyList());
+        List<Record> records = facets.getRecords();
+
+        assertEquals(Arrays.asList("facet", "val", "count", "avgPrice"), facets.getFields());
+        assertEquals(6, records.size());
+        assertEquals("maxPrice", records.get(0).getValue("facet"));
+        assertEquals(2199.0, records.get(0).getValue("val"));
+        assertEquals("electronics", records.get(1).getValue("val"));
+        assertEquals(12, records.get(1).getValue("count"));
+        assertEquals(215.5, records.get(1).getValue("avgPrice"));
+        assertEquals("prices", records.get(5).getValue("facet"));
+        assertEquals("after", records.get(5).getValue("val"));
+        assertEquals(7, records.get(5).getValue("count"));
+    }
+
+    @Test
+    public void testRequestedFieldsOnly() {
+        SolrFacets facets = SolrFacets.fromResponse(parseFacets(), Arrays.asList("val", "count", "sum"));
+
+        assertEquals(Arrays.asList("val", "count", "sum"), facets.getFields());
+        assertEquals(Arrays.asList("val", "count", "sum"),
+            Arrays.asList(facets.getRecords().get(2).getRecord().keySet().toArray()));
+        assertNull(facets.getRecords().get(2).getValue("sum"));
+        assertTrue(SolrFacets.fromResponse(null, Arrays.asList("val")).getRecords().isEmpty());
+    }
+
+}
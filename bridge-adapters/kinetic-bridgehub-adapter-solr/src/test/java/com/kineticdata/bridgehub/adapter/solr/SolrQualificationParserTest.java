@@ -0,0 +1,140 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.jayway.jsonpath.JsonPath;
+import com.kineticdata.bridgehub.adapter.BridgeError;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrQualificationParserTest {
+
+    private static final String KINETIC_QUERY =
+        "{\"type\": \"Kinetic DSL\", \"query\": \"<%= parameter[\"kinetic json query\"] %>\"}";
+
+    private String parse(Map<String, Map<String, String>> rewrites, String kineticJson) throws Exception {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("kinetic json query", kineticJson);
+        SolrQualificationParser parser = new SolrQualificationParser();
+        parser.setWildcardRewrites(rewrites);
+        return parser.parse(KINETIC_QUERY, parameters);
+    }
+
+    private Map<String, Map<String, String>> buildRewrites() {
+        Map<String, String> companions = new HashMap<String, String>();
+        companions.put(SolrQualificationParser.REWRITE_REVERSED, "name_rev");
+        companions.put(SolrQualificationParser.REWRITE_NGRAM, "name_ngram");
+        Map<String, Map<String, String>> rewrites = new HashMap<String, Map<String, String>>();
+        rewrites.put("name", companions);
+        return rewrites;
+    }
+
+    @Test
+    public void testEndsWithUsesReversedPrefix() throws Exception {
+        assertEquals("name_rev:dopi*",
+            parse(buildRewrites(), "{\"name\": {\"value\": \"ipod\", \"matcher\": \"endsWith\"}}"));
+        assertEquals("name_rev:(dopi* onan* )",
+            parse(buildRewrites(), "{\"name\": {\"value\": [\"ipod\", \"nano\"], \"matcher\": \"endsWith\"}}"));
+    }
+
+    @Test
+    public void testLikeUsesNgramTerm() throws Exception {
+        assertEquals("name_ngram:ipod\\ mini",
+            parse(buildRewrites(), "{\"name\": {\"value\": \"ipod mini\", \"matcher\": \"like\"}}"));
+    }
+
+    @Test
+    public void testLikeOutsideGramSizesKeepsWildcard() throws Exception {
+        Map<String, SolrSchema.Field> fields = new HashMap<String, SolrSchema.Field>();
+        fields.put("name_ngram", new SolrSchema.Field("name_ngram", "text_ngram", false, false, 3, 5));
+        SolrQualificationParser parser = new SolrQualificationParser();
+        parser.setWildcardRewrites(buildRewrites());
+        parser.setSchema(new SolrSchema("techproducts", "id", fields, Collections.<SolrSchema.Field>emptyList()));
+        Map<String, String> parameters = new HashMap<String, String>();
+
+        parameters.put("kinetic json query", "{\"name\": {\"value\": \"ipod\", \"matcher\": \"like\"}}");
+        assertEquals("name_ngram:ipod", parser.parse(KINETIC_QUERY, parameters));
+        parameters.put("kinetic json query", "{\"name\": {\"value\": \"ip\", \"matcher\": \"like\"}}");
+        assertEquals("name:*ip*", parser.parse(KINETIC_QUERY, parameters));
+        parameters.put("kinetic json query", "{\"name\": {\"value\": \"ipod mini\", \"matcher\": \"like\"}}");
+        assertEquals("name:*ipod\\ mini*", parser.parse(KINETIC_QUERY, parameters));
+        parameters.put("kinetic json query", "{\"name\": {\"value\": [\"ipod\", \"ip\"], \"matcher\": \"like\"}}");
+        assertEquals("name:(*ipod* *ip* )", parser.parse(KINETIC_QUERY, parameters));
+    }
+
+    @Test
+    public void testFieldsWithoutCompanionKeepWildcards() throws Exception {
+        String query = parse(buildRewrites(), "{\"features\": {\"value\": \"mp3\", \"matcher\": \"like\"}}");
+        assertEquals("features:*mp3*", query);
+        assertTrue(SolrQualificationParser.hasLeadingWildcard(query));
+        assertEquals("name:ipod*",
+            parse(buildRewrites(), "{\"name\": {\"value\": \"ipod\", \"matcher\": \"startsWith\"}}"));
+        assertEquals("name:*ipod",
+            parse(null, "{\"name\": {\"value\": \"ipod\", \"matcher\": \"endsWith\"}}"));
+    }
+
+    @Test
+    public void testHasLeadingWildcard() {
+        assertTrue(SolrQualificationParser.hasLeadingWildcard("name:*pod"));
+        assertTrue(SolrQualificationParser.hasLeadingWildcard("inStock:true AND (cat:?lectronics)"));
+        assertFalse(SolrQualificationParser.hasLeadingWildcard("*:*"));
+        assertFalse(SolrQualificationParser.hasLeadingWildcard("name:ipo* AND price:[* TO 100]"));
+        assertFalse(SolrQualificationParser.hasLeadingWildcard("manu:* AND name:i*od"));
+        assertFalse(SolrQualificationParser.hasLeadingWildcard("name:\\*pod"));
+        assertFalse(SolrQualificationParser.hasLeadingWildcard("name_rev:dopi*"));
+    }
+
+    @Test
+    public void testFacetsBindParameters() throws Exception {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("category field", "cat\"");
+        SolrQualificationParser parser = new SolrQualificationParser();
+        String query = "{\"type\": \"Solr DSL\", \"query\": \"inStock:true\", "
+            + "\"facets\": {\"categories\": {\"type\": \"terms\", \"field\": \"<%= parameter[\"category field\"] %>\"}}}";
+
+        String facets = parser.getFacets(query, parameters);
+
+        assertEquals("cat\"", JsonPath.read(facets, "$.categories.field"));
+        assertEquals("terms", JsonPath.read(facets, "$.categories.type"));
+        assertNull(new SolrQualificationParser().getFacets("inStock:true", parameters));
+    }
+
+    @Test
+    public void testStreamingExpression() throws Exception {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("category", "hard drive");
+        String query = "{\"type\": \"Streaming Expression\", \"query\": "
+            + "\"rollup(search(techproducts, q=\\\"cat:<%= parameter[\"category\"] %>\\\", fl=\\\"manu_id_s,price\\\", "
+            + "sort=\\\"manu_id_s asc\\\", qt=\\\"/export\\\"), over=\\\"manu_id_s\\\", sum(price), count(*))\"}";
+
+        SolrQualificationParser parser = new SolrQualificationParser();
+        assertTrue(parser.isStreamingExpression(query));
+        assertEquals("rollup(search(techproducts, q=\"cat:hard\\ drive\", fl=\"manu_id_s,price\", "
+            + "sort=\"manu_id_s asc\", qt=\"/export\"), over=\"manu_id_s\", sum(price), count(*))",
+            parser.parse(query, parameters));
+        assertFalse(new SolrQualificationParser().isStreamingExpression("name:ipod"));
+    }
+
+    @Test
+    public void testStreamingExpressionParametersCannotAddArguments() throws Exception {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("category", "drive\", fl=\"id");
+        parameters.put("fields", "id), update(techproducts, \"x\\");
+        String query = "{\"type\": \"Streaming Expression\", \"query\": "
+            + "\"search(techproducts, q=\\\"cat:<%= parameter[\"category\"] %>\\\", "
+            + "fl=<%= parameter[\"fields\"] %>, sort=\\\"id asc\\\")\"}";
+
+        assertEquals("search(techproducts, q=\"cat:drive\\\",\\ fl\\=\\\"id\", "
+            + "fl=\"id), update(techproducts, \\\"x\\\\\", sort=\"id asc\")",
+            new SolrQualificationParser().parse(query, parameters));
+    }
+
+    @Test(expected = BridgeError.class)
+    public void testStreamingExpressionRejectsWrites() throws Exception {
+        String query = "{\"type\": \"Streaming Expression\", \"query\": "
+            + "\"update(techproducts, search(techproducts, q=\\\"update(x)\\\", fl=\\\"id\\\", sort=\\\"id asc\\\"))\"}";
+        new SolrQualificationParser().parse(query, new HashMap<String, String>());
+    }
+
+}
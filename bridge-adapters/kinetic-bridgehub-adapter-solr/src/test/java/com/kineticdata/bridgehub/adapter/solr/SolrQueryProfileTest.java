@@ -0,0 +1,76 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeRequest;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrQueryProfileTest {
+
+    private BridgeRequest buildRequest(String productName, String pageSize) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("product name", productName);
+        Map<String, String> metadata = new HashMap<String, String>();
+        metadata.put("pageSize", pageSize);
+        metadata.put("cursorMark", "*");
+
+        BridgeRequest request = new BridgeRequest();
+        request.setStructure("techproducts");
+        request.setQuery("name:<%= parameter[\"product name\"] %>");
+        request.setFields(Arrays.asList("id", "name"));
+        request.setParameters(parameters);
+        request.setMetadata(metadata);
+        return request;
+    }
+
+    @Test
+    public void testRecordsMostFrequentQueries() {
+        SolrQueryProfile profile = new SolrQueryProfile(new File("unused"), 2, 60000);
+        profile.record("search", buildRequest("ipod", "25"));
+        profile.record("search", buildRequest("memory", "25"));
+        profile.record("search", buildRequest("drive", "10"));
+        // The profile is full, new queries are skipped.
+        profile.record("count", buildRequest("ipod", "25"));
+
+        List<SolrQueryProfile.Query> queries = profile.getTopQueries(5);
+        assertEquals(2, queries.size());
+        assertEquals(2, queries.get(0).getCount());
+        BridgeRequest replayed = queries.get(0).toRequest();
+        assertEquals("memory", replayed.getParameters().get("product name"));
+        assertEquals("25", replayed.getMetadata("pageSize"));
+        assertNull(replayed.getMetadata("cursorMark"));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("solr-query-profile", ".json");
+        try {
+            SolrQueryProfile profile = new SolrQueryProfile(file, 10, 0);
+            for (int i = 0; i < 4; i++) {
+                profile.record("search", buildRequest("ipod", "25"));
+            }
+            profile.record("retrieve", buildRequest("memory", "1"));
+            assertTrue(profile.claimSave());
+            profile.save();
+
+            // Saving halves the counts, queries run once are forgotten.
+            assertEquals(1, profile.size());
+            assertEquals(2, profile.getTopQueries(1).get(0).getCount());
+
+            SolrQueryProfile loaded = new SolrQueryProfile(file, 10, 60000);
+            loaded.load();
+            List<SolrQueryProfile.Query> queries = loaded.getTopQueries(10);
+            assertEquals(2, queries.size());
+            assertEquals("search", queries.get(0).getMethod());
+            assertEquals(4, queries.get(0).getCount());
+            assertEquals(Arrays.asList("id", "name"), queries.get(1).toRequest().getFields());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
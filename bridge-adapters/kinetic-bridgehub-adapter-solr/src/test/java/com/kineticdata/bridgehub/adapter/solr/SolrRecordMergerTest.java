@@ -0,0 +1,85 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrRecordMergerTest {
+
+    private Record record(String id, Object price) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("id", id);
+        values.put("price", price);
+        return new Record(values);
+    }
+
+    private List<String> ids(List<Record> records) {
+        List<String> ids = new ArrayList<String>();
+        for (Record record : records) {
+            ids.add((String)record.getValue("id"));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMergeAppliesGlobalOffsetAndPageSize() {
+        Map<String, String> order = new LinkedHashMap<String, String>();
+        order.put("price", "ASC");
+        // Each structure returns its first offset + pageSize documents.
+        List<List<Record>> pages = Arrays.asList(
+            Arrays.asList(record("a1", 1), record("a2", 4), record("a3", 5), record("a4", 9)),
+            Arrays.asList(record("b1", 2.5d), record("b2", 3), record("b3", null)),
+            Arrays.asList(record("c1", 4), record("c2", 6)));
+
+        SolrRecordMerger merger = new SolrRecordMerger(order);
+
+        assertEquals(Arrays.asList("a1", "b1", "b2", "a2"), ids(merger.merge(pages, 0, 4)));
+        assertEquals(Arrays.asList("c1", "a3", "c2", "a4"), ids(merger.merge(pages, 4, 4)));
+        assertEquals(Arrays.asList("b3"), ids(merger.merge(pages, 8, 4)));
+    }
+
+    @Test
+    public void testMergeComparesLongsExactly() {
+        Map<String, String> order = new LinkedHashMap<String, String>();
+        order.put("price", "ASC");
+        // The same double, 2^53 + 1 and 2^53 + 2 only differ as longs.
+        List<List<Record>> pages = Arrays.asList(
+            Arrays.<Record>asList(record("a1", 9007199254740993L)),
+            Arrays.<Record>asList(record("b1", 9007199254740992L), record("b2", 9007199254740994L)));
+
+        assertEquals(Arrays.asList("b1", "a1", "b2"), ids(new SolrRecordMerger(order).merge(pages, 0, 10)));
+    }
+
+    @Test
+    public void testMergeDescendingKeepsMissingValuesLast() {
+        Map<String, String> order = new LinkedHashMap<String, String>();
+        order.put("price", "DESC");
+        List<List<Record>> pages = Arrays.asList(
+            Arrays.asList(record("a1", 9), record("a2", null)),
+            Arrays.asList(record("b1", 10), record("b2", 9)));
+
+        List<Record> merged = new SolrRecordMerger(order).merge(pages, 0, 10);
+
+        assertEquals(Arrays.asList("b1", "a1", "b2", "a2"), ids(merged));
+    }
+
+    @Test
+    public void testMergeWithoutOrderKeepsStructureOrder() {
+        List<List<Record>> pages = Arrays.asList(
+            Arrays.asList(record("a1", 3), record("a2", 1)),
+            Collections.<Record>emptyList(),
+            Arrays.asList(record("c1", 2)));
+
+        List<Record> merged = new SolrRecordMerger(new LinkedHashMap<String, String>()).merge(pages, 1, 10);
+
+        assertEquals(Arrays.asList("a2", "c1"), ids(merged));
+    }
+
+}
@@ -0,0 +1,327 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeError;
+import com.kineticdata.bridgehub.adapter.BridgeRequest;
+import com.kineticdata.bridgehub.adapter.RecordList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs the retry, hedging and deadline handling of bridge requests against a local HTTP server
+ * that stands in for Solr and answers each select request as scripted by the test.
+ */
+public class SolrRequestExecutionTest {
+
+    private static final String STRUCTURE = "techproducts";
+    private static final int NUM_FOUND = 42;
+    private static final String SCHEMA_RESPONSE = "{\"schema\":{\"uniqueKey\":\"id\","
+        + "\"fieldTypes\":[{\"name\":\"string\",\"class\":\"solr.StrField\"}],"
+        + "\"fields\":[{\"name\":\"id\",\"type\":\"string\"}]}}";
+
+    /** The status and delay of a scripted select response. */
+    private static class Reply {
+        private final int status;
+        private final long delayMillis;
+
+        private Reply(int status, long delayMillis) {
+            this.status = status;
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    private final Queue<Reply> replies = new ConcurrentLinkedQueue<Reply>();
+    private final AtomicInteger selects = new AtomicInteger();
+    private final Queue<String> selectBodies = new ConcurrentLinkedQueue<String>();
+    private boolean serveSchema = false;
+    private HttpServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.equals("/solr/admin/info/system")) {
+                    respond(exchange, 200, "{}");
+                } else if (path.equals("/solr/" + STRUCTURE + "/schema") && serveSchema) {
+                    respond(exchange, 200, SCHEMA_RESPONSE);
+                } else if (path.matches("/solr/[^/]+/select") && exchange.getRequestMethod().equals("GET")) {
+                    // The document count of the schema.
+                    respond(exchange, 200, buildSelectResponse(exchange.getRequestURI().getQuery()));
+                } else if (path.matches("/solr/[^/]+/select")) {
+                    selects.incrementAndGet();
+                    selectBodies.add(URLDecoder.decode(readBody(exchange), "UTF-8"));
+                    Reply reply = replies.poll();
+                    if (reply == null) reply = new Reply(200, 0);
+                    try {
+                        Thread.sleep(reply.delayMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    respond(exchange, reply.status,
+                        reply.status == 200 ? buildSelectResponse(exchange.getRequestURI().getQuery()) : "{}");
+                } else {
+                    respond(exchange, 404, "{}");
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /** Returns the documents doc-{start} onwards of the rows and start parameters of the query string. */
+    private String buildSelectResponse(String queryString) {
+        int rows = 0;
+        int start = 0;
+        for (String parameter : queryString.split("&")) {
+            if (parameter.startsWith("rows=")) rows = Integer.parseInt(parameter.substring(5));
+            if (parameter.startsWith("start=")) start = Integer.parseInt(parameter.substring(6));
+        }
+        StringBuilder documents = new StringBuilder();
+        for (int i = start; i < Math.min(start + rows, NUM_FOUND); i++) {
+            if (documents.length() > 0) documents.append(",");
+            documents.append("{\"id\":\"doc-").append(i).append("\"}");
+        }
+        return String.format("{\"responseHeader\":{\"status\":0},\"response\":{\"numFound\":%d,\"start\":%d,\"docs\":[%s]}}",
+            NUM_FOUND, start, documents);
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        InputStream input = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        try {
+            exchange.sendResponseHeaders(status, bytes.length);
+            OutputStream output = exchange.getResponseBody();
+            output.write(bytes);
+            output.close();
+        } catch (IOException e) {
+            // The adapter aborted the request, for example the losing request of a hedge.
+        }
+    }
+
+    private SolrAdapter createAdapter(Map<String, String> extraProperties) throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(SolrAdapter.Properties.API_URL, "http://127.0.0.1:" + server.getAddress().getPort() + "/solr");
+        properties.put(SolrAdapter.Properties.DEFER_VALIDATION, "true");
+        properties.putAll(extraProperties);
+        SolrAdapter adapter = new SolrAdapter();
+        adapter.setProperties(properties);
+        adapter.initialize();
+        return adapter;
+    }
+
+    private Map<String, String> createPageMetadata(int pageSize, int offset) {
+        Map<String, String> metadata = new HashMap<String, String>();
+        metadata.put("pageSize", String.valueOf(pageSize));
+        metadata.put("offset", String.valueOf(offset));
+        return metadata;
+    }
+
+    private BridgeRequest createRequest(Map<String, String> metadata) {
+        BridgeRequest request = new BridgeRequest();
+        request.setStructure(STRUCTURE);
+        request.setQuery("inStock:true");
+        request.setMetadata(metadata);
+        request.setParameters(new HashMap<String, String>());
+        return request;
+    }
+
+    @Test
+    public void testRetriesUnavailableResponse() throws Exception {
+        SolrAdapter adapter = createAdapter(new HashMap<String, String>());
+        replies.add(new Reply(503, 0));
+
+        assertEquals(Long.valueOf(42), adapter.count(createRequest(new HashMap<String, String>())).getValue());
+        assertEquals(2, selects.get());
+        assertEquals(Long.valueOf(1), adapter.getMetrics().get("retries." + STRUCTURE));
+    }
+
+    @Test
+    public void testHedgesSlowRequest() throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(SolrAdapter.Properties.HEDGE_REQUESTS, "true");
+        SolrAdapter adapter = createAdapter(properties);
+        // Enough fast responses for the latency percentile the hedge delay is based on.
+        for (int i = 0; i < 20; i++) {
+            adapter.count(createRequest(new HashMap<String, String>()));
+        }
+        assertNull(adapter.getMetrics().get("hedges." + STRUCTURE));
+
+        replies.add(new Reply(200, 5000));
+        long start = System.currentTimeMillis();
+        assertEquals(Long.valueOf(42), adapter.count(createRequest(new HashMap<String, String>())).getValue());
+
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        assertEquals(Long.valueOf(1), adapter.getMetrics().get("hedges." + STRUCTURE));
+    }
+
+    @Test
+    public void testDeadlineExpires() throws Exception {
+        SolrAdapter adapter = createAdapter(new HashMap<String, String>());
+        replies.add(new Reply(200, 5000));
+        Map<String, String> metadata = new HashMap<String, String>();
+        metadata.put("timeout", "500");
+
+        long start = System.currentTimeMillis();
+        try {
+            adapter.count(createRequest(metadata));
+            fail("The request should time out.");
+        } catch (BridgeError e) {
+            assertTrue(System.currentTimeMillis() - start < 4000);
+        }
+        // A read timeout is not retried, the budget is spent.
+        assertEquals(1, selects.get());
+        assertNull(adapter.getMetrics().get("retries." + STRUCTURE));
+    }
+
+    @Test
+    public void testChunksBreakTiesByUniqueKey() throws Exception {
+        serveSchema = true;
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(SolrAdapter.Properties.RESULT_CHUNK_SIZE, "10");
+        SolrAdapter adapter = createAdapter(properties);
+        BridgeRequest request = createRequest(createPageMetadata(25, 5));
+        request.setFields(Arrays.asList("id"));
+
+        RecordList records = adapter.search(request);
+
+        assertEquals("25", records.getMetadata().get("size"));
+        assertEquals("doc-5", records.getRecords().get(0).getValue("id"));
+        assertEquals("doc-29", records.getRecords().get(24).getValue("id"));
+        assertEquals(3, selectBodies.size());
+        for (String body : selectBodies) {
+            assertTrue(body, body.contains("sort=score desc,id asc"));
+        }
+    }
+
+    @Test
+    public void testChunksShareDeadline() throws Exception {
+        serveSchema = true;
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(SolrAdapter.Properties.RESULT_CHUNK_SIZE, "10");
+        SolrAdapter adapter = createAdapter(properties);
+        // Each chunk is answered within the timeout, the page is not.
+        replies.add(new Reply(200, 600));
+        replies.add(new Reply(200, 600));
+        Map<String, String> metadata = createPageMetadata(25, 0);
+        metadata.put("timeout", "1000");
+        BridgeRequest request = createRequest(metadata);
+        request.setFields(Arrays.asList("id"));
+
+        long start = System.currentTimeMillis();
+        try {
+            adapter.search(request);
+            fail("The request should time out.");
+        } catch (BridgeError e) {
+            assertTrue(System.currentTimeMillis() - start < 1500);
+        }
+        assertEquals(2, selects.get());
+    }
+
+    @Test
+    public void testOpenBreakerServesStaleSearch() throws Exception {
+        serveSchema = true;
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(SolrAdapter.Properties.STALE_TOLERANCE, "600");
+        properties.put(SolrAdapter.Properties.RETRY_ATTEMPTS, "0");
+        SolrAdapter adapter = createAdapter(properties);
+        BridgeRequest request = createRequest(createPageMetadata(5, 0));
+        request.setFields(Arrays.asList("id"));
+        assertEquals(5, adapter.search(request).getRecords().size());
+
+        // With the search, enough server errors for the minimum calls that open the breaker.
+        for (int i = 0; i < 9; i++) {
+            replies.add(new Reply(500, 0));
+            try {
+                adapter.count(createRequest(new HashMap<String, String>()));
+                fail("The count should fail.");
+            } catch (BridgeError e) {
+                assertFalse(e instanceof SolrCircuitOpenError);
+            }
+        }
+
+        int selectsBefore = selects.get();
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(5);
+            RecordList records = adapter.search(request);
+            assertEquals("true", records.getMetadata().get("stale"));
+            assertEquals("doc-0", records.getRecords().get(0).getValue("id"));
+        }
+        assertEquals(selectsBefore, selects.get());
+        assertEquals(Long.valueOf(5), adapter.getMetrics().get("breaker." + STRUCTURE + ".staleResponses"));
+    }
+
+    @Test
+    public void testMaxPageSizeAppliesToRequestedPage() throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(SolrAdapter.Properties.MAX_PAGE_SIZE, "10");
+        SolrAdapter adapter = createAdapter(properties);
+        // Each structure is searched for the first offset + pageSize documents.
+        BridgeRequest request = createRequest(createPageMetadata(10, 20));
+        request.setStructure(STRUCTURE + ",inventory");
+        request.setFields(Arrays.asList("id"));
+
+        assertEquals("10", adapter.search(request).getMetadata().get("size"));
+
+        request.setMetadata(createPageMetadata(11, 0));
+        try {
+            adapter.search(request);
+            fail("The page size should be rejected.");
+        } catch (BridgeError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("(11)"));
+        }
+    }
+
+    @Test
+    public void testMultiStructureFacetsAreRejected() throws Exception {
+        SolrAdapter adapter = createAdapter(new HashMap<String, String>());
+        BridgeRequest request = createRequest(createPageMetadata(10, 0));
+        request.setStructure(STRUCTURE + ",inventory");
+        request.setQuery("{\"type\": \"Solr DSL\", \"query\": \"inStock:true\", "
+            + "\"facets\": {\"categories\": {\"type\": \"terms\", \"field\": \"cat\"}}}");
+
+        try {
+            adapter.search(request);
+            fail("A facet search of several structures should be rejected.");
+        } catch (BridgeError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("single structure"));
+        }
+        assertEquals(0, selects.get());
+    }
+
+}
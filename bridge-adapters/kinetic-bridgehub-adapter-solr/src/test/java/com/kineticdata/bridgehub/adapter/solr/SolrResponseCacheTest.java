@@ -0,0 +1,59 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrResponseCacheTest {
+
+    /** Builds a decoded select response of {@code documents} documents. */
+    private Map<String, Object> buildResponse(int documents) {
+        List<Object> docs = new ArrayList<Object>();
+        for (int i = 0; i < documents; i++) {
+            Map<String, Object> document = new LinkedHashMap<String, Object>();
+            document.put("id", "DOC-" + i);
+            document.put("name", "Document name " + i);
+            docs.add(document);
+        }
+        Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("numFound", (long)documents);
+        response.put("docs", docs);
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("response", response);
+        return result;
+    }
+
+    @Test
+    public void testEvictsByBytes() {
+        long responseBytes = SolrPageBuffer.estimateBytes("a") + SolrPageBuffer.estimateBytes(buildResponse(10));
+        SolrResponseCache cache = new SolrResponseCache(200, 3 * responseBytes, responseBytes);
+        for (String key : new String[] {"a", "b", "c", "d"}) {
+            cache.put(key, buildResponse(10));
+        }
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.getBytes() <= 3 * responseBytes);
+        assertNull(cache.get("a", 60000));
+        assertNotNull(cache.get("d", 60000));
+        assertTrue(cache.get("d", 60000).isStale());
+    }
+
+    @Test
+    public void testSkipsLargeResponses() {
+        long maxEntryBytes = SolrPageBuffer.estimateBytes("small") + SolrPageBuffer.estimateBytes(buildResponse(10));
+        SolrResponseCache cache = new SolrResponseCache(200, 100 * maxEntryBytes, maxEntryBytes);
+        cache.put("small", buildResponse(10));
+        cache.put("large", buildResponse(1000));
+
+        assertNotNull(cache.get("small", 60000));
+        assertNull(cache.get("large", 60000));
+        // A large response replacing a cached one drops the outdated entry.
+        cache.put("small", buildResponse(1000));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+}
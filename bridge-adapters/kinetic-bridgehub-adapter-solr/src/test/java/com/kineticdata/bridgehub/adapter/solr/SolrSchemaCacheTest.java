@@ -0,0 +1,103 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.BridgeError;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrSchemaCacheTest {
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static void await(CountDownLatch latch) throws BridgeError {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new BridgeError("Interrupted while loading the schema.", e);
+        }
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final SolrSchemaCache cache = new SolrSchemaCache(
+                new SolrSchemaCache.Loader() {
+                    @Override
+                    public SolrSchema load(String structure, long deadline) throws BridgeError {
+                        loads.incrementAndGet();
+                        started.countDown();
+                        await(release);
+                        return new SolrSchema(structure, "id", new HashMap<String, SolrSchema.Field>(),
+                            Collections.<SolrSchema.Field>emptyList());
+                    }
+                },
+                executor, 60000, 1000
+            );
+            Callable<SolrSchema> get = new Callable<SolrSchema>() {
+                @Override
+                public SolrSchema call() {
+                    return cache.get("techproducts", deadline(5000));
+                }
+            };
+            Future<SolrSchema> first = executor.submit(get);
+            started.await();
+            Future<SolrSchema> second = executor.submit(get);
+            release.countDown();
+
+            assertNotNull(first.get());
+            assertSame(first.get(), second.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitIsBoundedByDeadline() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final SolrSchemaCache cache = new SolrSchemaCache(
+                new SolrSchemaCache.Loader() {
+                    @Override
+                    public SolrSchema load(String structure, long deadline) throws BridgeError {
+                        started.countDown();
+                        await(release);
+                        return null;
+                    }
+                },
+                executor, 60000, 1000
+            );
+            executor.submit(new Callable<SolrSchema>() {
+                @Override
+                public SolrSchema call() {
+                    return cache.get("techproducts", deadline(5000));
+                }
+            });
+            started.await();
+
+            long start = System.currentTimeMillis();
+            assertNull(cache.get("techproducts", deadline(100)));
+            assertTrue(System.currentTimeMillis() - start < 2000);
+            release.countDown();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
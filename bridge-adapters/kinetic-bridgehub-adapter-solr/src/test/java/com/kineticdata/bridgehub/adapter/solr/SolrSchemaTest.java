@@ -0,0 +1,103 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.jayway.jsonpath.JsonPath;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrSchemaTest {
+
+    private final String schemaResponse = "{\"schema\": {"
+        + "\"uniqueKey\": \"id\","
+        + "\"fieldTypes\": ["
+        + "  {\"name\": \"string\", \"class\": \"solr.StrField\", \"docValues\": true},"
+        + "  {\"name\": \"strings\", \"class\": \"solr.StrField\", \"docValues\": true, \"multiValued\": true},"
+        + "  {\"name\": \"text_general\", \"class\": \"solr.TextField\"},"
+        + "  {\"name\": \"text_ngram\", \"class\": \"solr.TextField\", \"indexAnalyzer\": {"
+        + "    \"tokenizer\": {\"class\": \"solr.KeywordTokenizerFactory\"},"
+        + "    \"filters\": [{\"class\": \"solr.NGramFilterFactory\", \"minGramSize\": \"3\", \"maxGramSize\": \"5\"}]}}"
+        + "],"
+        + "\"fields\": ["
+        + "  {\"name\": \"id\", \"type\": \"string\"},"
+        + "  {\"name\": \"name\", \"type\": \"text_general\"},"
+        + "  {\"name\": \"cat\", \"type\": \"strings\"},"
+        + "  {\"name\": \"name_ngram\", \"type\": \"text_ngram\"}"
+        + "],"
+        + "\"dynamicFields\": ["
+        + "  {\"name\": \"*_s\", \"type\": \"string\"},"
+        + "  {\"name\": \"attr_*\", \"type\": \"text_general\", \"multiValued\": true}"
+        + "]"
+        + "}}";
+
+    private SolrSchema parseSchema() {
+        return SolrSchema.fromResponse("techproducts", JsonPath.parse(schemaResponse).read("$", Map.class));
+    }
+
+    @Test
+    public void testFieldResolution() {
+        SolrSchema schema = parseSchema();
+
+        assertEquals("id", schema.getUniqueKey());
+        assertTrue(schema.getField("cat").isMultiValued());
+        assertTrue(schema.getField("cat").hasDocValues());
+        assertFalse(schema.getField("name").isMultiValued());
+        assertEquals("*_s", schema.getField("manu_s").getName());
+        assertTrue(schema.getField("attr_color").isMultiValued());
+        assertNull(schema.getField("nmae"));
+        assertEquals(3, schema.getField("name_ngram").getMinGramSize());
+        assertEquals(5, schema.getField("name_ngram").getMaxGramSize());
+        assertEquals(0, schema.getField("name").getMaxGramSize());
+    }
+
+    @Test
+    public void testFieldPlan() {
+        SolrSchema schema = parseSchema();
+        SolrSchema.FieldPlan plan = schema.getPlan(Arrays.asList("id", "cat", "nmae", "attr_color[0]"));
+
+        // Fields the cached schema does not define are still requested, they may have been added since.
+        assertEquals("id,cat,nmae,attr_color", plan.getFieldList());
+        assertEquals(SolrSchema.FieldKind.SCALAR, plan.getKind(0));
+        assertEquals(SolrSchema.FieldKind.MULTI, plan.getKind(1));
+        assertEquals(SolrSchema.FieldKind.UNRESOLVED, plan.getKind(2));
+        assertEquals(SolrSchema.FieldKind.PATH, plan.getKind(3));
+        assertSame(plan, schema.getPlan(Arrays.asList("id", "cat", "nmae", "attr_color[0]")));
+
+        Map<String, Object> document = new HashMap<String, Object>();
+        document.put("id", "SP2514N");
+        document.put("cat", Arrays.asList("electronics", "hard drive"));
+        document.put("attr_color", Arrays.asList("black"));
+        Map<String, Object> values = plan.extract(document);
+
+        assertEquals("SP2514N", values.get("id"));
+        assertEquals(Arrays.asList("electronics", "hard drive"), values.get("cat"));
+        assertNull(values.get("nmae"));
+        assertTrue(values.containsKey("nmae"));
+        assertEquals("black", values.get("attr_color[0]"));
+    }
+
+    @Test
+    public void testFieldAddedAfterSchemaWasCached() {
+        SolrSchema.FieldPlan plan = parseSchema().getPlan(Arrays.asList("id", "added_i"));
+
+        assertEquals("id,added_i", plan.getFieldList());
+        Map<String, Object> document = new HashMap<String, Object>();
+        document.put("id", "SP2514N");
+        document.put("added_i", 7);
+        assertEquals(7, plan.extract(document).get("added_i"));
+    }
+
+    @Test
+    public void testUniqueKeyValue() {
+        SolrSchema schema = parseSchema();
+
+        assertEquals("SP2514N", schema.getUniqueKeyValue("id:SP2514N"));
+        assertEquals("a/b c", schema.getUniqueKeyValue("id:a\\/b\\ c"));
+        assertEquals("a b", schema.getUniqueKeyValue("id:\"a b\""));
+        assertNull(schema.getUniqueKeyValue("id:SP*"));
+        assertNull(schema.getUniqueKeyValue("id:SP2514N && name:drive"));
+        assertNull(schema.getUniqueKeyValue("name:SP2514N"));
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import com.kineticdata.bridgehub.adapter.Record;
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrSpilledRecordsTest {
+
+    private static final List<String> FIELDS = Arrays.asList("id", "name", "price", "popularity", "version", "inStock", "cat", "store");
+
+    private Map<String, Object> buildValues(int index) {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("id", "DOC-" + index);
+        values.put("name", index % 3 == 0 ? null : "n\u00e4me " + index);
+        values.put("price", index * 1.5d);
+        values.put("popularity", index);
+        values.put("version", 1651234567890123456L + index);
+        values.put("inStock", index % 2 == 0);
+        values.put("cat", Arrays.asList("electronics", "category " + (index % 3)));
+        Map<String, Object> store = new LinkedHashMap<String, Object>();
+        store.put("location", new BigDecimal("45.17614"));
+        store.put("open", Collections.emptyList());
+        values.put("store", store);
+        return values;
+    }
+
+    private File[] listSpillFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private int countSpillFiles() {
+        int count = 0;
+        for (File file : listSpillFiles()) {
+            if (file.getName().startsWith("solr-bridge-") && file.getName().endsWith(".spill")) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testRecordsRoundTrip() throws Exception {
+        int filesBefore = countSpillFiles();
+        SolrSpilledRecords records;
+        try (SolrSpilledRecords.Writer writer = new SolrSpilledRecords.Writer(FIELDS)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.write(buildValues(i));
+            }
+            records = writer.finish();
+        }
+
+        assertEquals(1000, records.size());
+        assertTrue(records.getBytes() > 0);
+        // The file is removed once it is mapped, the records are still readable.
+        assertEquals(filesBefore, countSpillFiles());
+        for (int i : new int[] {999, 0, 3, 500}) {
+            assertEquals(buildValues(i), records.get(i).getRecord());
+        }
+    }
+
+    @Test
+    public void testBufferSpillsOverBudget() throws Exception {
+        SolrPageBuffer small = new SolrPageBuffer(FIELDS, 1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            small.add(buildValues(i));
+        }
+        List<Record> heapRecords = small.finish();
+        assertFalse(small.isSpilled());
+        assertFalse(heapRecords instanceof SolrSpilledRecords);
+
+        SolrPageBuffer large = new SolrPageBuffer(FIELDS, 64 * 1024);
+        for (int i = 0; i < 5000; i++) {
+            large.add(buildValues(i));
+        }
+        List<Record> spilledRecords = large.finish();
+        assertTrue(large.isSpilled());
+        assertTrue(spilledRecords instanceof SolrSpilledRecords);
+        assertEquals(5000, spilledRecords.size());
+        assertTrue(large.getSpilledBytes() > 64 * 1024);
+        assertEquals(buildValues(0), spilledRecords.get(0).getRecord());
+        assertEquals(buildValues(4999), spilledRecords.get(4999).getRecord());
+    }
+
+    @Test
+    public void testRecordsAreMutable() throws Exception {
+        SolrSpilledRecords records;
+        try (SolrSpilledRecords.Writer writer = new SolrSpilledRecords.Writer(FIELDS)) {
+            for (int i = 0; i < 10; i++) {
+                writer.write(buildValues(i));
+            }
+            records = writer.finish();
+        }
+        Map<String, Object> expected = buildValues(2);
+
+        Record record = records.get(2);
+        record.getRecord().put("name", "renamed");
+        record.getRecord().put("note", "added");
+        record.getRecord().remove("price");
+        expected.put("name", "renamed");
+        expected.put("note", "added");
+        expected.remove("price");
+
+        assertEquals(expected, record.getRecord());
+        // The change is kept by the list like a map backed record, other rows are not affected.
+        assertEquals(expected, records.get(2).getRecord());
+        assertEquals(buildValues(3), records.get(3).getRecord());
+    }
+
+    @Test
+    public void testBudgetEstimate() {
+        List<Map<String, Object>> documents = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 5000; i++) {
+            documents.add(buildValues(i));
+        }
+        long bytes = SolrPageBuffer.estimateBytes(documents);
+
+        assertTrue(SolrPageBuffer.exceedsBudget(documents, bytes / 2));
+        assertFalse(SolrPageBuffer.exceedsBudget(documents, bytes * 2));
+        assertFalse(SolrPageBuffer.exceedsBudget(documents.subList(0, 10), bytes));
+    }
+
+    @Test
+    public void testClosedWriterRemovesFile() throws Exception {
+        int filesBefore = countSpillFiles();
+        SolrPageBuffer buffer = new SolrPageBuffer(FIELDS, 0);
+        buffer.add(buildValues(1));
+        assertEquals(filesBefore + 1, countSpillFiles());
+        buffer.close();
+        assertEquals(filesBefore, countSpillFiles());
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.kineticdata.bridgehub.adapter.solr;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SolrTupleStreamTest {
+
+    private final String streamResponse = "{\"result-set\": {\"docs\": ["
+        + "  {\"id\": \"SP2514N\", \"cat\": [\"electronics\", \"hard drive\"], \"manu\": {\"name\": \"Samsung\"}},"
+        + "  {\"id\": \"6H500F0\", \"price\": 350.0},"
+        + "  {\"id\": \"F8V7067-APL-KIT\", \"popularity\": 1},"
+        + "  {\"EOF\": true, \"RESPONSE_TIME\": 4}"
+        + "]}}";
+
+    @Test
+    public void testDecodeTuples() throws Exception {
+        SolrTupleStream stream = SolrTupleStream.decode(new StringReader(streamResponse), 10);
+
+        assertEquals(3, stream.getCount());
+        assertEquals(3, stream.getTuples().size());
+        assertNull(stream.getException());
+        assertEquals(Arrays.asList("electronics", "hard drive"), stream.getTuples().get(0).get("cat"));
+        assertEquals("Samsung", ((java.util.Map)stream.getTuples().get(0).get("manu")).get("name"));
+        assertEquals(350.0, stream.getTuples().get(1).get("price"));
+        assertEquals(1L, stream.getTuples().get(2).get("popularity"));
+    }
+
+    @Test
+    public void testOnlyKeepsLimit() throws Exception {
+        SolrTupleStream stream = SolrTupleStream.decode(new StringReader(streamResponse), 2);
+
+        assertEquals(3, stream.getCount());
+        assertEquals(2, stream.getTuples().size());
+        assertEquals("6H500F0", stream.getTuples().get(1).get("id"));
+    }
+
+    @Test
+    public void testExceptionTuple() throws Exception {
+        SolrTupleStream stream = SolrTupleStream.decode(new StringReader("{\"result-set\": {\"docs\": ["
+            + "{\"EXCEPTION\": \"Invalid stream expression\", \"EOF\": true}]}}"), 10);
+
+        assertEquals("Invalid stream expression", stream.getException());
+        assertEquals(0, stream.getCount());
+    }
+
+}